@@ -0,0 +1,26 @@
+package com.jason.treadmills.model;
+
+import junit.framework.TestCase;
+
+/**
+ * Stable ids of entities used as adapter item ids
+ */
+public class GameEntityTest extends TestCase {
+
+    public void testEntitiesWithSameContentHaveDifferentIds() {
+        final GameEntity first = new GameEntity(1, 4);
+        final GameEntity second = new GameEntity(1, 4);
+        final GameEntity third = new GameEntity(2, 4);
+        assertTrue(first.getStableId() != second.getStableId());
+        assertTrue(first.getStableId() != third.getStableId());
+        assertTrue(second.getStableId() != third.getStableId());
+    }
+
+    public void testIdDoesNotFollowContent() {
+        final GameEntity entity = new GameEntity(1, 4);
+        final long id = entity.getStableId();
+        entity.imageResId = 2;
+        entity.titleResId = 5;
+        assertEquals(id, entity.getStableId());
+    }
+}
@@ -0,0 +1,88 @@
+package com.jason.treadmills.ui.viewcarousel;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.ViewTreeObserver;
+
+import com.jason.treadmills.R;
+import com.jason.treadmills.ui.activity.TCarouselActivity;
+
+/**
+ * Drawing of carousel which doesn't rotate must neither allocate nor schedule more frames
+ */
+@SuppressWarnings("deprecation")
+public class CarouselDrawTest extends ActivityInstrumentationTestCase2<TCarouselActivity> {
+	private static final int WARM_UP_FRAMES = 5;
+	private static final int MEASURED_FRAMES = 20;
+
+	private Carousel mCarousel;
+
+	public CarouselDrawTest() {
+		super(TCarouselActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCarousel = (Carousel) getActivity().findViewById(R.id.carousel);
+		getInstrumentation().waitForIdleSync();
+	}
+
+	public void testSteadyStateFrameDoesNotAllocate() throws Throwable {
+		final int[] allocations = new int[1];
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				final Bitmap bitmap = Bitmap.createBitmap(mCarousel.getWidth(), mCarousel.getHeight(), Bitmap.Config.ARGB_8888);
+				final Canvas canvas = new Canvas(bitmap);
+				for (int i = 0; i < WARM_UP_FRAMES; i++) {
+					mCarousel.draw(canvas);
+				}
+
+				Debug.resetThreadAllocCount();
+				Debug.startAllocCounting();
+				for (int i = 0; i < MEASURED_FRAMES; i++) {
+					mCarousel.draw(canvas);
+				}
+				Debug.stopAllocCounting();
+				allocations[0] = Debug.getThreadAllocCount();
+				bitmap.recycle();
+			}
+		});
+
+		assertEquals("objects allocated in " + MEASURED_FRAMES + " frames", 0, allocations[0]);
+	}
+
+	public void testNoFramesAfterRotationStops() throws Throwable {
+		// let initial rotation into slot finish
+		Thread.sleep(1000);
+		getInstrumentation().waitForIdleSync();
+
+		final int[] draws = new int[1];
+		final ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+			@Override
+			public void onDraw() {
+				draws[0]++;
+			}
+		};
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				mCarousel.getViewTreeObserver().addOnDrawListener(listener);
+			}
+		});
+
+		Thread.sleep(500);
+		getInstrumentation().waitForIdleSync();
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				mCarousel.getViewTreeObserver().removeOnDrawListener(listener);
+			}
+		});
+
+		assertEquals(0, draws[0]);
+	}
+}
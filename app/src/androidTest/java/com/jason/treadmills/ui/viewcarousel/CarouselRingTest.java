@@ -0,0 +1,106 @@
+package com.jason.treadmills.ui.viewcarousel;
+
+import junit.framework.TestCase;
+
+/**
+ * Geometry of slots on carousel ring
+ */
+public class CarouselRingTest extends TestCase {
+	private static final float EPSILON = 0.001f;
+
+	private CarouselRing mRing;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mRing = new CarouselRing();
+		mRing.setCount(4);
+		mRing.setGeometry(1000, 600, 0);
+		for (int i = 0; i < 4; i++) {
+			mRing.setItemWidth(i, 100);
+		}
+		mRing.setRotation(0);
+	}
+
+	public void testFrontSlotIsCenteredAndOpaque() {
+		assertEquals(450, mRing.getX(0), EPSILON);
+		assertEquals(0, mRing.getZ(0), EPSILON);
+		assertEquals(-300, mRing.getY(0), EPSILON);
+		assertEquals(1, mRing.getAlpha(0), EPSILON);
+	}
+
+	public void testBackSlotIsFarthest() {
+		assertEquals(1000, mRing.getZ(2), EPSILON);
+		assertEquals(75 / 255f, mRing.getAlpha(2), EPSILON);
+		assertEquals(500, mRing.getZ(1), EPSILON);
+		assertEquals(mRing.getAlpha(1), mRing.getAlpha(3), EPSILON);
+	}
+
+	public void testRotationWrapsAngles() {
+		mRing.rotate(-100);
+		assertEquals(260, mRing.getAngle(0), EPSILON);
+		assertEquals(350, mRing.getAngle(1), EPSILON);
+
+		mRing.rotate(820);
+		assertEquals(0, mRing.getAngle(0), EPSILON);
+		assertEquals(0, mRing.getZ(0), EPSILON);
+	}
+
+	public void testNearestSlotFollowsRotation() {
+		mRing.setRotation(-130);
+		assertEquals(1, mRing.getNearestSlot());
+		assertEquals(40, mRing.getDistanceToFront(1), EPSILON);
+
+		mRing.setRotation(-140);
+		assertEquals(2, mRing.getNearestSlot());
+		assertEquals(-40, mRing.getDistanceToFront(2), EPSILON);
+
+		// Slot 0 is nearest from both sides of the wrap
+		mRing.setRotation(-350);
+		assertEquals(0, mRing.getNearestSlot());
+		mRing.setRotation(30);
+		assertEquals(0, mRing.getNearestSlot());
+		assertEquals(-30, mRing.getDistanceToFront(0), EPSILON);
+	}
+
+	public void testNearestSlotKeepsFloatPrecision() {
+		mRing.setCount(7);
+		final float spacing = 360.0f / 7;
+		mRing.setRotation(-3 * spacing - spacing * 0.49f);
+		assertEquals(3, mRing.getNearestSlot());
+		assertEquals(spacing * 0.49f, mRing.getDistanceToFront(3), EPSILON);
+
+		mRing.rotate(mRing.getDistanceToFront(3));
+		assertEquals(mRing.getRotationOfSlot(3), mRing.getRotation(), EPSILON);
+		assertEquals(0, mRing.getZ(3), EPSILON);
+	}
+
+	public void testSlotTakesNextItemBehindTheRing() {
+		mRing.setFrontItem(10);
+		assertEquals(2, mRing.getNearestSlot());
+		assertEquals(10, mRing.getItemOfSlot(2));
+		assertEquals(9, mRing.getItemOfSlot(1));
+		assertEquals(11, mRing.getItemOfSlot(3));
+
+		// Slot 0 is at the back, items 8 and 12 are equally far
+		mRing.rotate(-10);
+		assertEquals(170, mRing.getAngle(0), EPSILON);
+		assertEquals(12, mRing.getItemOfSlot(0));
+		mRing.rotate(20);
+		assertEquals(8, mRing.getItemOfSlot(0));
+
+		// Many turns later the same slots show items far along the ring
+		mRing.rotate(-10 - 360 * 25);
+		assertEquals(110, mRing.getItemOfSlot(2));
+		assertEquals(2, mRing.getNearestSlot());
+		assertEquals(0, mRing.getZ(2), EPSILON);
+	}
+
+	public void testGrowingKeepsCount() {
+		mRing.setCount(40);
+		mRing.setCount(3);
+		assertEquals(3, mRing.getCount());
+		mRing.setRotation(0);
+		assertEquals(120, mRing.getAngle(1), EPSILON);
+	}
+}
@@ -0,0 +1,182 @@
+package com.jason.treadmills.ui.viewcarousel;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+import com.jason.treadmills.R;
+import com.jason.treadmills.ui.activity.TCarouselActivity;
+import com.jason.treadmills.utils.FrameScheduler;
+
+/**
+ * Virtualized carousel rebinds slots as they pass the back of the ring to
+ * images prepared ahead, bitmaps of items coming around again must still be
+ * drawable
+ */
+public class CarouselVirtualizedTest extends ActivityInstrumentationTestCase2<TCarouselActivity> {
+	private static final int SLOTS = 3;
+	private static final float STEP = 10;
+	private static final int TURNS = 3;
+	private static final long FRAME = 16666667L;
+
+	private Carousel mCarousel;
+
+	public CarouselVirtualizedTest() {
+		super(TCarouselActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCarousel = (Carousel) getActivity().findViewById(R.id.carousel);
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mCarousel.setVisibleSlots(SLOTS);
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+	}
+
+	public void testRotatingSeveralTurnsKeepsBitmapsUsable() throws Throwable {
+		assertTrue(mCarousel.isVirtualized());
+		assertEquals(SLOTS, mCarousel.getChildCount());
+
+		final boolean[] shown = new boolean[mCarousel.getCount()];
+		final Bitmap bitmap = Bitmap.createBitmap(mCarousel.getWidth(), mCarousel.getHeight(), Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		for (float angle = 0;angle < 360 * TURNS;angle += STEP) {
+			runTestOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					// Rebound items only take prepared images, none is built here
+					mCarousel.trackMotionScroll(STEP);
+					// Drawing recycled bitmap throws
+					mCarousel.draw(canvas);
+				}
+			});
+			// Images are prepared between frames
+			getInstrumentation().waitForIdleSync();
+
+			runTestOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0;i < mCarousel.getChildCount();i++) {
+						final CarouselItem item = (CarouselItem) mCarousel.getChildAt(i);
+						final BitmapDrawable drawable = (BitmapDrawable) item.getImageView().getDrawable();
+						assertNotNull("item " + item.getIndex() + " has prepared image", drawable);
+						assertFalse("item " + item.getIndex() + " shows recycled bitmap", drawable.getBitmap().isRecycled());
+						shown[item.getIndex()] = true;
+					}
+				}
+			});
+		}
+		bitmap.recycle();
+
+		for (int i = 0;i < shown.length;i++) {
+			assertTrue("item " + i + " was never bound", shown[i]);
+		}
+		assertEquals(SLOTS, mCarousel.getChildCount());
+	}
+
+	public void testFlingPastBackSnapsIntoSlotWithoutViewReuse() throws Throwable {
+		final FakeClock clock = new FakeClock();
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mCarousel.setAdapter(new FreshItemAdapter(10));
+				mCarousel.setFrameScheduler(new FrameScheduler(clock));
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				assertTrue(mCarousel.isVirtualized());
+				final int selected = mCarousel.getSelectedItemPosition();
+
+				// Selected item is carried past the back of the ring and rebound
+				// into new view, rotation stops between slots
+				mCarousel.trackMotionScroll(200);
+				mCarousel.onUp();
+				for (int i = 0;i < 300 && clock.mRequested;i++) {
+					clock.frame();
+				}
+				assertFalse("snap animation finished", clock.mRequested);
+
+				assertTrue(mCarousel.getSelectedItemPosition() != selected);
+				CarouselItem front = null;
+				for (int i = 0;i < mCarousel.getChildCount();i++) {
+					final CarouselItem item = (CarouselItem) mCarousel.getChildAt(i);
+					if (item.getIndex() == mCarousel.getSelectedItemPosition()) front = item;
+				}
+				assertNotNull("selected item is on the ring", front);
+				final float angle = front.getCurrentAngle() % 360;
+				assertTrue("selected item at front, angle " + angle, Math.min(angle, 360 - angle) < 0.1f);
+			}
+		});
+	}
+
+	/**
+	 * Adapter which never reuses convertView
+	 */
+	private class FreshItemAdapter extends BaseAdapter {
+		private final int mCount;
+		private final Bitmap mBitmap = Bitmap.createBitmap(40, 40, Bitmap.Config.ARGB_8888);
+
+		FreshItemAdapter(int count) {
+			mCount = count;
+		}
+
+		@Override
+		public int getCount() {
+			return mCount;
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return position;
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			final CarouselItem item = new CarouselItem(getActivity());
+			item.setIndex(position);
+			item.setImageBitmap(mBitmap);
+			return item;
+		}
+	}
+
+	private static class FakeClock implements FrameScheduler.Clock {
+		long mNow = 1000 * FRAME;
+		boolean mRequested;
+		private FrameScheduler mScheduler;
+
+		@Override
+		public long nanoTime() {
+			return mNow;
+		}
+
+		@Override
+		public void requestFrame(FrameScheduler scheduler) {
+			mScheduler = scheduler;
+			mRequested = true;
+		}
+
+		void frame() {
+			mNow += FRAME;
+			mRequested = false;
+			mScheduler.doFrame(mNow);
+		}
+	}
+}
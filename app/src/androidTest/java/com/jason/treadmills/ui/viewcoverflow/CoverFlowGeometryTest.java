@@ -0,0 +1,119 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import android.graphics.Camera;
+import android.graphics.Matrix;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares closed form {@link CoverFlowGeometry} with transformation chain which FeatureCoverFlow built
+ * through android.graphics.Camera before.
+ */
+public class CoverFlowGeometryTest extends TestCase {
+	private static final float EPSILON = 1e-3f;
+
+	private static final float SPACING = 0.3f;
+	private static final float SCALING_THRESHOLD = 0.3f;
+	private static final float ADJUST_POSITION_THRESHOLD = 0.1f;
+	private static final float ADJUST_POSITION_MULTIPLIER = 1.0f;
+	private static final float MAX_SCALE_FACTOR = 1.3f;
+	private static final float RADIUS = 1.5f;
+	private static final float RADIUS_IN_MATRIX_SPACE = 1000f;
+	private static final int TUNING_WIDGET_SIZE = 1280;
+	private static final int COVER_WIDTH = 160;
+	private static final int COVER_HEIGHT = 200;
+
+	private CoverFlowGeometry mGeometry;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mGeometry = new CoverFlowGeometry();
+		mGeometry.setParams(SPACING, SCALING_THRESHOLD, ADJUST_POSITION_THRESHOLD, ADJUST_POSITION_MULTIPLIER,
+				MAX_SCALE_FACTOR, RADIUS, RADIUS_IN_MATRIX_SPACE, TUNING_WIDGET_SIZE, COVER_WIDTH);
+	}
+
+	public void testOffsetOnCircleMatchesTrigonometry() {
+		mGeometry.setViewport(1080, 0);
+		for (int c = -700; c <= 1800; c += 7) {
+			float x = mGeometry.getRelativePosition(c) / RADIUS;
+			if (x < -1.0f) x = -1.0f;
+			if (x > 1.0f) x = 1.0f;
+			final float expected = (float) (1 - Math.sin(Math.acos(x)));
+			assertEquals("center " + c, expected, mGeometry.getOffsetOnCircle(c), 1e-5f);
+		}
+	}
+
+	public void testSpacingMultiplierMatchesTrigonometry() {
+		mGeometry.setViewport(1080, 0);
+		for (int c = 0; c <= 1080; c += 5) {
+			final float x = mGeometry.getRelativePosition(c) / RADIUS;
+			final float expected = (float) Math.sin(Math.acos(x));
+			assertEquals("center " + c, expected, mGeometry.getSpacingMultiplierOnCircle(c), 1e-5f);
+		}
+	}
+
+	public void testMatrixMatchesCameraChain() {
+		final float[] closedForm = new float[9];
+		final float[] legacy = new float[9];
+		final Matrix m = new Matrix();
+
+		final int[] widths = {480, 720, 1080, 1280};
+		final int[] scrolls = {0, -333, 4567};
+		for (int width : widths) {
+			for (int scrollX : scrolls) {
+				mGeometry.setViewport(width, scrollX);
+				for (int c = scrollX; c <= scrollX + width; c += 3) {
+					mGeometry.computeCoverMatrix(c, COVER_WIDTH, COVER_HEIGHT, closedForm);
+					legacyTransformation(width, scrollX, c, m);
+					m.getValues(legacy);
+
+					for (int i = 0; i < 9; i++) {
+						final float tolerance = EPSILON * Math.max(1f, Math.abs(legacy[i]));
+						assertEquals("width " + width + " scroll " + scrollX + " center " + c + " value " + i,
+								legacy[i], closedForm[i], tolerance);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Transformation chain as it was computed by FeatureCoverFlow with Camera
+	 */
+	private void legacyTransformation(int width, int scrollX, int childCenter, Matrix m) {
+		final Camera camera = new Camera();
+		final Matrix temp = new Matrix();
+		final float widgetSizeMultiplier = ((float) TUNING_WIDGET_SIZE) / width;
+
+		m.reset();
+
+		final float f = 1 + (MAX_SCALE_FACTOR - 1) * (1 - Math.abs(CoverFlowGeometry.getClampedRelativePosition(
+				relativePosition(width, scrollX, childCenter), SCALING_THRESHOLD * widgetSizeMultiplier)));
+		m.postScale(f, f);
+
+		float x = relativePosition(width, scrollX, childCenter) / RADIUS;
+		if (x < -1.0f) x = -1.0f;
+		if (x > 1.0f) x = 1.0f;
+		final float z = RADIUS_IN_MATRIX_SPACE * (float) (1 - Math.sin(Math.acos(x)));
+		camera.save();
+		camera.translate(0.0f, 0.0f, z);
+		camera.getMatrix(temp);
+		m.postConcat(temp);
+		camera.restore();
+
+		final float crp = CoverFlowGeometry.getClampedRelativePosition(relativePosition(width, scrollX, childCenter),
+				ADJUST_POSITION_THRESHOLD * widgetSizeMultiplier);
+		final float sx = relativePosition(width, scrollX, childCenter) / RADIUS;
+		final float d = COVER_WIDTH * ADJUST_POSITION_MULTIPLIER * SPACING * crp * (float) Math.sin(Math.acos(sx));
+		m.postTranslate(d, 0f);
+
+		m.preTranslate(-COVER_WIDTH / 2f, -COVER_HEIGHT / 2f);
+		m.postTranslate(COVER_WIDTH / 2f, COVER_HEIGHT / 2f);
+	}
+
+	private static float relativePosition(int width, int scrollX, int pixelPos) {
+		final int half = width / 2;
+		return (pixelPos - (scrollX + half)) / ((float) half);
+	}
+}
@@ -0,0 +1,45 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+
+import com.jason.treadmills.R;
+import com.jason.treadmills.ui.activity.TCoverFlowActivity;
+
+/**
+ * Drawing order used for hit testing between frames must follow scroll and children, not only count of children
+ */
+public class FeatureCoverFlowDrawingOrderTest extends ActivityInstrumentationTestCase2<TCoverFlowActivity> {
+	private FeatureCoverFlow mCoverFlow;
+
+	public FeatureCoverFlowDrawingOrderTest() {
+		super(TCoverFlowActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCoverFlow = (FeatureCoverFlow) getActivity().findViewById(R.id.ViewTCoverFlowAty);
+		getInstrumentation().waitForIdleSync();
+	}
+
+	public void testCenterDrawnLastAfterScrollWithoutDraw() throws Throwable {
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				final int count = mCoverFlow.getChildCount();
+				assertTrue(count > 2);
+				final int center = mCoverFlow.getChildDrawingOrder(count, count - 1);
+				assertTrue(center + 1 < count);
+
+				//move next child to center of screen, nothing is drawn or laid out in between
+				final View next = mCoverFlow.getChildAt(center + 1);
+				final int screenCenter = mCoverFlow.getWidth() / 2 + mCoverFlow.getScrollX();
+				mCoverFlow.scrollBy((next.getLeft() + next.getRight()) / 2 - screenCenter, 0);
+
+				assertEquals(count, mCoverFlow.getChildCount());
+				assertEquals(center + 1, mCoverFlow.getChildDrawingOrder(count, count - 1));
+			}
+		});
+	}
+}
@@ -0,0 +1,148 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.jason.treadmills.R;
+import com.jason.treadmills.ui.activity.TCoverFlowActivity;
+
+import java.util.ArrayList;
+
+/**
+ * Children kept by structural item changes and covers reused after data change must show current data of items
+ */
+public class FeatureCoverFlowItemChangeTest extends ActivityInstrumentationTestCase2<TCoverFlowActivity> {
+	private static final int COUNT = 20;
+
+	private FeatureCoverFlow mCoverFlow;
+	private LabelAdapter mAdapter;
+
+	public FeatureCoverFlowItemChangeTest() {
+		super(TCoverFlowActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCoverFlow = (FeatureCoverFlow) getActivity().findViewById(R.id.ViewTCoverFlowAty);
+		mAdapter = new LabelAdapter(COUNT, false);
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mCoverFlow.setAdapter(mAdapter);
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+	}
+
+	public void testChangeThenInsertRebindsKeptChild() throws Throwable {
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				assertTrue(mCoverFlow.getChildCount() > 1);
+				final int changed = (mCoverFlow.getFirstVisiblePosition() + 1) % COUNT;
+
+				mAdapter.mLabels.set(changed, "changed");
+				mAdapter.notifyItemChanged(changed);
+				mAdapter.mLabels.add(0, "inserted");
+				mAdapter.notifyItemInserted(0);
+				mCoverFlow.computeScroll();
+
+				boolean shown = false;
+				final int first = mCoverFlow.getFirstVisiblePosition();
+				for (int i = 0; i < mCoverFlow.getChildCount(); i++) {
+					final int position = (first + i) % mAdapter.getCount();
+					final String label = labelOf(mCoverFlow.getChildAt(i));
+					assertEquals("cover of position " + position, mAdapter.mLabels.get(position), label);
+					if ("changed".equals(label)) shown = true;
+				}
+				assertTrue("changed item is on screen", shown);
+			}
+		});
+	}
+
+	public void testDataSetChangeWithStableIdsShowsNewContent() throws Throwable {
+		mAdapter = new LabelAdapter(COUNT, true);
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mCoverFlow.setAdapter(mAdapter);
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				assertTrue(mCoverFlow.isStableIdCache());
+				//covers around position 0 go to cover cache
+				mCoverFlow.jumpToPosition(COUNT / 2);
+				assertTrue(mCoverFlow.getCacheBytes() > 0);
+
+				//content changes, ids stay same
+				for (int i = 0; i < COUNT; i++) {
+					mAdapter.mLabels.set(i, "new " + i);
+				}
+				mAdapter.notifyDataSetChanged();
+				mCoverFlow.computeScroll();
+				assertVisibleLabels();
+
+				mCoverFlow.jumpToPosition(0);
+				assertVisibleLabels();
+			}
+		});
+	}
+
+	private void assertVisibleLabels() {
+		final int first = mCoverFlow.getFirstVisiblePosition();
+		for (int i = 0; i < mCoverFlow.getChildCount(); i++) {
+			final int position = (first + i) % mAdapter.getCount();
+			assertEquals("cover of position " + position, mAdapter.mLabels.get(position), labelOf(mCoverFlow.getChildAt(i)));
+		}
+	}
+
+	private static String labelOf(View frame) {
+		return ((TextView) ((ViewGroup) frame).getChildAt(0)).getText().toString();
+	}
+
+	private class LabelAdapter extends ItemChangeAdapter {
+		final ArrayList<String> mLabels = new ArrayList<String>();
+		private final boolean mStableIds;
+
+		LabelAdapter(int count, boolean stableIds) {
+			for (int i = 0; i < count; i++) {
+				mLabels.add(String.valueOf(i));
+			}
+			mStableIds = stableIds;
+		}
+
+		@Override
+		public boolean hasStableIds() {
+			return mStableIds;
+		}
+
+		@Override
+		public int getCount() {
+			return mLabels.size();
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return mLabels.get(position);
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			final TextView v = convertView instanceof TextView ? (TextView) convertView : new TextView(getActivity());
+			v.setText(mLabels.get(position));
+			return v;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+
+import com.jason.treadmills.R;
+import com.jason.treadmills.ui.activity.TCoverFlowActivity;
+
+/**
+ * Covers are rewrapped into frames many times while scrolling, pre draw listeners must not pile up
+ */
+public class FeatureCoverFlowPreDrawTest extends ActivityInstrumentationTestCase2<TCoverFlowActivity> {
+	private static final int SCROLL_STEPS = 300;
+
+	private FeatureCoverFlow mCoverFlow;
+
+	public FeatureCoverFlowPreDrawTest() {
+		super(TCoverFlowActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCoverFlow = (FeatureCoverFlow) getActivity().findViewById(R.id.ViewTCoverFlowAty);
+	}
+
+	public void testListenersDoNotPileUpAfterLongScrolling() throws Throwable {
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				//adapter returning always same views, so every cover is wrapped again after each refill
+				mCoverFlow.setAdapter(new ReusingAdapter(20));
+
+				final int w = mCoverFlow.getWidth();
+				final int h = mCoverFlow.getHeight();
+				for (int i = 0; i < SCROLL_STEPS; i++) {
+					mCoverFlow.scrollBy(53, 0);
+					mCoverFlow.releaseAllMemoryResources();
+					mCoverFlow.measure(View.MeasureSpec.makeMeasureSpec(w, View.MeasureSpec.EXACTLY),
+							View.MeasureSpec.makeMeasureSpec(h, View.MeasureSpec.EXACTLY));
+					mCoverFlow.layout(mCoverFlow.getLeft(), mCoverFlow.getTop(), mCoverFlow.getRight(), mCoverFlow.getBottom());
+				}
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+
+		//every registration of the widget would be called by one dispatch
+		assertEquals(1, dispatchPreDraw(mCoverFlow.getViewTreeObserver()));
+	}
+
+	public void testListenerRemovedOnDetach() throws Throwable {
+		final ViewTreeObserver observer = mCoverFlow.getViewTreeObserver();
+		assertEquals(1, dispatchPreDraw(observer));
+
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				final ViewGroup parent = (ViewGroup) mCoverFlow.getParent();
+				parent.removeView(mCoverFlow);
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+
+		assertEquals(0, dispatchPreDraw(observer));
+	}
+
+	/**
+	 * @return how many times was onPreDraw of the widget called by one dispatch of window observer
+	 */
+	private int dispatchPreDraw(final ViewTreeObserver observer) throws Throwable {
+		final int[] calls = new int[1];
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				final int before = mCoverFlow.getPreDrawCallCount();
+				observer.dispatchOnPreDraw();
+				calls[0] = mCoverFlow.getPreDrawCallCount() - before;
+			}
+		});
+		return calls[0];
+	}
+
+	private class ReusingAdapter extends BaseAdapter {
+		private final View[] mViews;
+
+		ReusingAdapter(int count) {
+			mViews = new View[count];
+		}
+
+		@Override
+		public int getCount() {
+			return mViews.length;
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return position;
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			if (mViews[position] == null) {
+				final ImageView v = new ImageView(getActivity());
+				v.setImageResource(R.drawable.it1);
+				mViews[position] = v;
+			}
+			return mViews[position];
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import junit.framework.TestCase;
+
+/**
+ * Tier transitions of quality governor fed by synthetic frame intervals
+ */
+public class FrameQualityGovernorTest extends TestCase {
+	private static final long MS = 1000000L;
+	/** Over default budget multiplied by downgrade threshold */
+	private static final long SLOW = 30 * MS;
+	/** Under default budget multiplied by upgrade threshold */
+	private static final long FAST = 8 * MS;
+
+	private FrameQualityGovernor mGovernor;
+	private long mTime;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mGovernor = new FrameQualityGovernor();
+		mTime = 1000 * MS;
+		mGovernor.onFrame(mTime);
+	}
+
+	public void testFirstFrameIsNotMeasured() {
+		mGovernor = new FrameQualityGovernor();
+		assertFalse(mGovernor.onFrame(mTime));
+		assertEquals(0, mGovernor.getAverageFrameNanos());
+		feed(SLOW, 1);
+		assertEquals(SLOW, mGovernor.getAverageFrameNanos());
+	}
+
+	public void testSlowFramesStepDownOneTierAtATime() {
+		assertEquals(0, feed(SLOW, 4));
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+		assertEquals(1, feed(SLOW, 1));
+		assertEquals(FrameQualityGovernor.TIER_NO_FILTERING, mGovernor.getTier());
+
+		//new tier is measured from scratch, it takes same number of frames again
+		assertEquals(0, feed(SLOW, 4));
+		assertEquals(1, feed(SLOW, 1));
+		assertEquals(FrameQualityGovernor.TIER_NO_REFLECTIONS, mGovernor.getTier());
+
+		assertEquals(1, feed(SLOW, 100));
+		assertEquals(FrameQualityGovernor.TIER_REDUCED_COVERS, mGovernor.getTier());
+	}
+
+	public void testFastFramesStepUpAfterHysteresis() {
+		feed(SLOW, 10);
+		assertEquals(FrameQualityGovernor.TIER_NO_REFLECTIONS, mGovernor.getTier());
+
+		assertEquals(0, feed(FAST, 29));
+		assertEquals(FrameQualityGovernor.TIER_NO_REFLECTIONS, mGovernor.getTier());
+		assertEquals(1, feed(FAST, 1));
+		assertEquals(FrameQualityGovernor.TIER_NO_FILTERING, mGovernor.getTier());
+
+		assertEquals(1, feed(FAST, 30));
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+		assertEquals(0, feed(FAST, 100));
+	}
+
+	public void testFramesNearBudgetDoNotFlap() {
+		feed(SLOW, 5);
+		assertEquals(FrameQualityGovernor.TIER_NO_FILTERING, mGovernor.getTier());
+
+		//jittering frames average between thresholds, neither slow nor fast streak builds up
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(0, feed(12 * MS, 1) + feed(24 * MS, 1));
+		}
+		assertEquals(FrameQualityGovernor.TIER_NO_FILTERING, mGovernor.getTier());
+	}
+
+	public void testAlternatingStreaksShorterThanHysteresisKeepTier() {
+		mGovernor.setHysteresis(5, 5);
+		mGovernor.setSmoothing(1);
+		for (int i = 0; i < 500; i++) {
+			assertEquals(0, feed(SLOW, 4) + feed(FAST, 4));
+		}
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+	}
+
+	public void testSingleDroppedFrameDoesNotStepDown() {
+		for (int i = 0; i < 100; i++) {
+			assertEquals(0, feed(FAST, 10) + feed(40 * MS, 1));
+		}
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+	}
+
+	public void testPausesAndLongGapsAreNotMeasured() {
+		feed(SLOW, 4);
+		mGovernor.pause();
+		//streak was forgotten and first frame after pause is not measured
+		assertEquals(0, feed(SLOW, 4));
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+
+		assertEquals(0, feed(300 * MS, 10));
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+	}
+
+	public void testMaxTierAndReset() {
+		mGovernor.setMaxTier(FrameQualityGovernor.TIER_NO_FILTERING);
+		assertEquals(1, feed(SLOW, 100));
+		assertEquals(FrameQualityGovernor.TIER_NO_FILTERING, mGovernor.getTier());
+
+		mGovernor.reset();
+		assertEquals(FrameQualityGovernor.TIER_FULL, mGovernor.getTier());
+		assertEquals(0, mGovernor.getAverageFrameNanos());
+
+		mGovernor.setMaxTier(FrameQualityGovernor.TIER_FULL);
+		assertEquals(0, feed(SLOW, 100));
+	}
+
+	/**
+	 * Reports frames with constant interval
+	 * @return number of tier changes
+	 */
+	private int feed(long interval, int frames) {
+		int changes = 0;
+		for (int i = 0; i < frames; i++) {
+			mTime += interval;
+			if (mGovernor.onFrame(mTime)) changes++;
+		}
+		return changes;
+	}
+}
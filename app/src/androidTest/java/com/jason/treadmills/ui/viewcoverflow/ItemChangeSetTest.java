@@ -0,0 +1,99 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import junit.framework.TestCase;
+
+/**
+ * Mapping of old positions through collected item changes
+ */
+public class ItemChangeSetTest extends TestCase {
+	private ItemChangeSet mChanges;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mChanges = new ItemChangeSet();
+	}
+
+	public void testChangeKeepsPositions() {
+		mChanges.addChanged(3, 2);
+		assertFalse(mChanges.isStructural());
+		for (int p = 0; p < 10; p++) {
+			assertEquals(p, mChanges.map(p));
+			assertEquals(p == 3 || p == 4, mChanges.isChanged(p));
+		}
+	}
+
+	public void testAdjacentChangesAreMerged() {
+		mChanges.addChanged(3, 1);
+		mChanges.addChanged(4, 1);
+		mChanges.addChanged(2, 1);
+		assertEquals(1, mChanges.getOpCount());
+		assertEquals(2, mChanges.getOpStart(0));
+		assertEquals(3, mChanges.getOpItemCount(0));
+	}
+
+	public void testInsertShiftsFollowingItems() {
+		mChanges.addInserted(2, 3);
+		assertTrue(mChanges.isStructural());
+		assertEquals(3, mChanges.getCountDelta());
+		assertEquals(1, mChanges.map(1));
+		assertEquals(5, mChanges.map(2));
+		assertEquals(12, mChanges.map(9));
+	}
+
+	public void testRemovedItemsAreReported() {
+		mChanges.addRemoved(2, 1);
+		mChanges.addRemoved(2, 1);
+		assertEquals(1, mChanges.getOpCount());
+		assertEquals(-2, mChanges.getCountDelta());
+		assertEquals(1, mChanges.map(1));
+		assertEquals(ItemChangeSet.REMOVED, mChanges.map(2));
+		assertEquals(ItemChangeSet.REMOVED, mChanges.map(3));
+		assertEquals(2, mChanges.map(4));
+		assertFalse(mChanges.isChanged(2));
+	}
+
+	public void testMoveForwardAndBackward() {
+		mChanges.addMoved(1, 4);
+		assertEquals(0, mChanges.map(0));
+		assertEquals(4, mChanges.map(1));
+		assertEquals(1, mChanges.map(2));
+		assertEquals(3, mChanges.map(4));
+		assertEquals(5, mChanges.map(5));
+
+		mChanges.clear();
+		mChanges.addMoved(4, 1);
+		assertEquals(1, mChanges.map(4));
+		assertEquals(2, mChanges.map(1));
+		assertEquals(5, mChanges.map(5));
+	}
+
+	public void testChangeIsTrackedThroughLaterOperations() {
+		mChanges.addChanged(5, 1);
+		mChanges.addInserted(0, 2);
+		mChanges.addMoved(7, 0);
+		assertTrue(mChanges.isChanged(5));
+		assertEquals(0, mChanges.map(5));
+		assertEquals(3, mChanges.map(0));
+	}
+
+	public void testChangeThenInsertBefore() {
+		mChanges.addChanged(3, 1);
+		mChanges.addInserted(0, 1);
+		assertTrue(mChanges.isStructural());
+		assertTrue(mChanges.isChanged(3));
+		assertEquals(4, mChanges.map(3));
+		assertFalse(mChanges.isChanged(4));
+		assertEquals(5, mChanges.map(4));
+	}
+
+	public void testTooManyOperationsOverflow() {
+		for (int i = 0; i <= ItemChangeSet.MAX_OPS; i++) {
+			mChanges.addMoved(0, 2);
+		}
+		assertTrue(mChanges.isOverflow());
+		assertFalse(mChanges.isEmpty());
+		mChanges.clear();
+		assertTrue(mChanges.isEmpty());
+	}
+}
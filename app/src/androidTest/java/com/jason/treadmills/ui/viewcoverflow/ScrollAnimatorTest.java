@@ -0,0 +1,111 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import junit.framework.TestCase;
+
+/**
+ * Fling and scroll of scroll animator evaluated for explicit frame times, curves follow platform Scroller
+ */
+public class ScrollAnimatorTest extends TestCase {
+	private static final long FRAME = 16666667L;
+	private static final long MS = 1000000L;
+	/** Platform Scroller on mdpi screen */
+	private static final float DECELERATION = ScrollAnimator.computeDeceleration(1f);
+
+	private ScrollAnimator mAnimator;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mAnimator = new ScrollAnimator(DECELERATION);
+	}
+
+	public void testFlingDistanceAndDurationFollowSpline() {
+		mAnimator.fling(100, 2000, 0);
+		//distance and duration of platform Scroller spline
+		final double decelerationRate = Math.log(0.78) / Math.log(0.9);
+		final double l = Math.log(0.35 * 2000 / DECELERATION);
+		final long duration = (long) (1000.0 * Math.exp(l / (decelerationRate - 1.0))) * MS;
+		final double distance = DECELERATION * Math.exp(decelerationRate / (decelerationRate - 1.0) * l);
+		assertEquals(100 + Math.round(distance), mAnimator.getFinalX());
+		assertEquals(duration, mAnimator.getDurationNanos());
+
+		long t = 0;
+		int previous = mAnimator.getCurrX();
+		while(!mAnimator.isFinished()){
+			t += FRAME;
+			assertTrue(mAnimator.computeScrollOffset(t));
+			assertTrue(mAnimator.getCurrX() >= previous);
+			previous = mAnimator.getCurrX();
+		}
+		assertEquals(mAnimator.getFinalX(), mAnimator.getCurrX());
+		assertFalse(mAnimator.computeScrollOffset(t + FRAME));
+	}
+
+	public void testFlingDeceleratesAlongSpline() {
+		mAnimator.fling(0, 3000, 0);
+		final long duration = mAnimator.getDurationNanos();
+		final int distance = mAnimator.getFinalX();
+
+		mAnimator.computeScrollOffset(duration / 4);
+		final int firstQuarter = mAnimator.getCurrX();
+		mAnimator.computeScrollOffset(duration / 2);
+		final int secondQuarter = mAnimator.getCurrX() - firstQuarter;
+		mAnimator.computeScrollOffset(duration * 3 / 4);
+		final int thirdQuarter = mAnimator.getCurrX() - firstQuarter - secondQuarter;
+		assertTrue(firstQuarter > secondQuarter);
+		assertTrue(secondQuarter > thirdQuarter);
+		//spline covers most of distance in first half
+		assertTrue(firstQuarter + secondQuarter > distance * 3 / 4);
+	}
+
+	public void testRetargetedFlingKeepsDurationAndScalesCurve() {
+		mAnimator.fling(0, -3000, 0);
+		final long duration = mAnimator.getDurationNanos();
+		final int distance = mAnimator.getFinalX();
+		mAnimator.computeScrollOffset(duration / 2);
+		final int halfway = mAnimator.getCurrX();
+
+		mAnimator.fling(0, -3000, 0);
+		mAnimator.setFinalX(distance * 2);
+		assertEquals(distance * 2, mAnimator.getFinalX());
+		assertEquals(duration, mAnimator.getDurationNanos());
+		mAnimator.computeScrollOffset(duration / 2);
+		assertEquals(halfway * 2, mAnimator.getCurrX(), 1);
+
+		mAnimator.computeScrollOffset(duration);
+		assertTrue(mAnimator.isFinished());
+		assertEquals(distance * 2, mAnimator.getCurrX());
+	}
+
+	public void testTargetBehindStartIsReached() {
+		mAnimator.fling(500, 100, 0);
+		mAnimator.setFinalX(450);
+		assertFalse(mAnimator.isFinished());
+
+		mAnimator.computeScrollOffset(mAnimator.getDurationNanos() / 2);
+		assertTrue(mAnimator.getCurrX() < 500);
+		mAnimator.computeScrollOffset(mAnimator.getDurationNanos() + FRAME);
+		assertEquals(450, mAnimator.getCurrX());
+	}
+
+	public void testRetargetToStartFinishesImmediately() {
+		mAnimator.fling(500, 800, 0);
+		mAnimator.setFinalX(500);
+		assertTrue(mAnimator.isFinished());
+		assertEquals(500, mAnimator.getCurrX());
+	}
+
+	public void testScrollFollowsViscousFluid() {
+		mAnimator.startScroll(0, 1000, 400, 0);
+		mAnimator.computeScrollOffset(10 * MS);
+		final int early = mAnimator.getCurrX();
+		mAnimator.computeScrollOffset(200 * MS);
+		final int middle = mAnimator.getCurrX();
+		//slow start, then most of distance is covered before half of duration
+		assertTrue(early < 50);
+		assertTrue(middle > 900);
+		assertTrue(mAnimator.computeScrollOffset(400 * MS));
+		assertEquals(1000, mAnimator.getCurrX());
+		assertTrue(mAnimator.isFinished());
+	}
+}
@@ -0,0 +1,135 @@
+package com.jason.treadmills.utils;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Frame dispatch of scheduler driven by fake clock
+ */
+public class FrameSchedulerTest extends TestCase {
+    private static final long FRAME = 16666667L;
+
+    private FakeClock mClock;
+    private FrameScheduler mScheduler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mClock = new FakeClock();
+        mScheduler = new FrameScheduler(mClock);
+    }
+
+    public void testCallbackRunsOncePerFrameWhenPostedTwice() {
+        final CountingCallback callback = new CountingCallback(false);
+        mScheduler.postFrameCallback(callback);
+        mScheduler.postFrameCallback(callback);
+        assertEquals(1, mClock.mRequests);
+
+        mClock.frame();
+        assertEquals(1, callback.mFrameTimes.size());
+        assertEquals(mClock.mNow, (long) callback.mFrameTimes.get(0));
+        assertFalse(mClock.mRequested);
+    }
+
+    public void testRunningCallbackGetsNextFrames() {
+        final CountingCallback callback = new CountingCallback(true);
+        mScheduler.postFrameCallback(callback);
+        mClock.frame();
+        mClock.frame();
+        mClock.frame();
+        assertEquals(3, callback.mFrameTimes.size());
+        assertEquals(2 * FRAME, callback.mFrameTimes.get(2) - callback.mFrameTimes.get(0));
+
+        callback.mRepeat = false;
+        mClock.frame();
+        assertFalse(mClock.mRequested);
+        assertEquals(4, callback.mFrameTimes.size());
+    }
+
+    public void testSameFrameTimeIsNotDispatchedTwice() {
+        final CountingCallback callback = new CountingCallback(true);
+        mScheduler.postFrameCallback(callback);
+        mScheduler.doFrame(FRAME);
+        mScheduler.doFrame(FRAME);
+        assertEquals(1, callback.mFrameTimes.size());
+        assertEquals(1, mScheduler.getFrameCount());
+    }
+
+    public void testCallbackRemovedDuringFrameDoesNotRun() {
+        final CountingCallback second = new CountingCallback(true);
+        final FrameScheduler.FrameCallback first = new FrameScheduler.FrameCallback() {
+            @Override
+            public boolean doFrame(long frameTimeNanos) {
+                mScheduler.removeFrameCallback(second);
+                return false;
+            }
+        };
+        mScheduler.postFrameCallback(first);
+        mScheduler.postFrameCallback(second);
+        mClock.frame();
+        assertEquals(0, second.mFrameTimes.size());
+        assertFalse(mScheduler.isScheduled(second));
+    }
+
+    public void testCallbackPostedDuringFrameWaitsForNextFrame() {
+        final CountingCallback posted = new CountingCallback(false);
+        mScheduler.postFrameCallback(new FrameScheduler.FrameCallback() {
+            @Override
+            public boolean doFrame(long frameTimeNanos) {
+                mScheduler.postFrameCallback(posted);
+                return false;
+            }
+        });
+        mClock.frame();
+        assertEquals(0, posted.mFrameTimes.size());
+        assertTrue(mClock.mRequested);
+
+        mClock.frame();
+        assertEquals(1, posted.mFrameTimes.size());
+    }
+
+    private static class CountingCallback implements FrameScheduler.FrameCallback {
+        private final ArrayList<Long> mFrameTimes = new ArrayList<>();
+        private boolean mRepeat;
+
+        CountingCallback(boolean repeat) {
+            mRepeat = repeat;
+        }
+
+        @Override
+        public boolean doFrame(long frameTimeNanos) {
+            mFrameTimes.add(frameTimeNanos);
+            return mRepeat;
+        }
+    }
+
+    private static class FakeClock implements FrameScheduler.Clock {
+        private FrameScheduler mScheduler;
+        private long mNow;
+        private boolean mRequested;
+        private int mRequests;
+
+        @Override
+        public long nanoTime() {
+            return mNow;
+        }
+
+        @Override
+        public void requestFrame(FrameScheduler scheduler) {
+            mScheduler = scheduler;
+            mRequested = true;
+            mRequests++;
+        }
+
+        /**
+         * Advances time by one frame and dispatches it if it was requested
+         */
+        void frame() {
+            mNow += FRAME;
+            if (!mRequested) return;
+            mRequested = false;
+            mScheduler.doFrame(mNow);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.jason.treadmills.utils;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Probing, deletion, growth and eviction order of int keyed LRU cache
+ */
+public class IntLruCacheTest extends TestCase {
+    /** Table of new cache has 2 * 16 slots */
+    private static final int INITIAL_MASK = 31;
+
+    private RecordingCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new RecordingCache(1000);
+    }
+
+    public void testCollidingKeysWrapAroundTable() {
+        final int[] keys = keysWithHome(INITIAL_MASK, 4);
+        for (int key : keys) {
+            mCache.put(key, "v" + key);
+        }
+        for (int key : keys) {
+            assertEquals("v" + key, mCache.get(key));
+        }
+        assertNull(mCache.get(keys[0] + 1));
+    }
+
+    public void testRemovalInMiddleOfProbeChain() {
+        final int[] keys = keysWithHome(INITIAL_MASK, 4);
+        for (int key : keys) {
+            mCache.put(key, "v" + key);
+        }
+
+        assertEquals("v" + keys[1], mCache.remove(keys[1]));
+        assertFalse(mCache.containsKey(keys[1]));
+        assertEquals("v" + keys[0], mCache.get(keys[0]));
+        assertEquals("v" + keys[2], mCache.get(keys[2]));
+        assertEquals("v" + keys[3], mCache.get(keys[3]));
+
+        //chain wrapped to start of table, removing its first slot must keep the rest reachable
+        mCache.remove(keys[0]);
+        assertEquals("v" + keys[2], mCache.get(keys[2]));
+        assertEquals("v" + keys[3], mCache.get(keys[3]));
+
+        mCache.put(keys[1], "again");
+        assertEquals("again", mCache.get(keys[1]));
+        assertEquals(3, mCache.count());
+        assertEquals(2, mCache.mRemoved.size());
+        assertFalse(mCache.mRemoved.get(0).evicted);
+    }
+
+    public void testEvictionFollowsAccessOrder() {
+        mCache.resize(3);
+        mCache.put(1, "a");
+        mCache.put(2, "b");
+        mCache.put(3, "c");
+        assertEquals("a", mCache.get(1));
+
+        mCache.put(4, "d");
+        assertFalse(mCache.containsKey(2));
+        assertTrue(mCache.containsKey(1));
+        assertEquals(1, mCache.evictionCount());
+        assertEquals(new Removal(true, 2, "b", null), mCache.mRemoved.get(0));
+
+        mCache.put(5, "e");
+        assertFalse(mCache.containsKey(3));
+    }
+
+    public void testReplacedValueIsNotEvicted() {
+        mCache.put(7, "old");
+        assertEquals("old", mCache.put(7, "new"));
+        assertEquals(1, mCache.count());
+        assertEquals(new Removal(false, 7, "old", "new"), mCache.mRemoved.get(0));
+        assertEquals(0, mCache.evictionCount());
+    }
+
+    public void testTrimToSizeCountsEntrySizes() {
+        //size of entry is length of its value
+        mCache.put(1, "aaaa");
+        mCache.put(2, "bb");
+        mCache.put(3, "cccccc");
+        assertEquals(12, mCache.size());
+
+        mCache.trimToSize(8);
+        assertFalse(mCache.containsKey(1));
+        assertTrue(mCache.containsKey(2));
+        assertEquals(8, mCache.size());
+
+        mCache.trimToSize(6);
+        assertFalse(mCache.containsKey(2));
+        assertEquals(6, mCache.size());
+        assertEquals(1, mCache.count());
+
+        mCache.evictAll();
+        assertEquals(0, mCache.size());
+        assertEquals(0, mCache.count());
+    }
+
+    public void testGrowingKeepsEntriesAndOrder() {
+        for (int i = 0; i < 100; i++) {
+            mCache.put(i * 32, "x");
+        }
+        assertEquals(100, mCache.count());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("x", mCache.get(i * 32));
+        }
+
+        mCache.get(0);
+        mCache.trimToCount(1);
+        assertTrue(mCache.containsKey(0));
+        assertEquals(99, mCache.evictionCount());
+        assertEquals(32, mCache.mRemoved.get(0).key);
+    }
+
+    public void testMatchesLinkedHashMapForRandomOperations() {
+        final int maxSize = 40;
+        final RecordingCache cache = new RecordingCache(maxSize * 3);
+        final LinkedHashMap<Integer, String> reference = new LinkedHashMap<Integer, String>(16, 0.75f, true);
+        int referenceSize = 0;
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            //few keys, so there are collisions, removals and replacements
+            final int key = random.nextInt(200) - 100;
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(reference.get(key), cache.get(key));
+                    break;
+                case 1:
+                    final String removed = reference.remove(key);
+                    if (removed != null) referenceSize -= removed.length();
+                    assertEquals(removed, cache.remove(key));
+                    break;
+                default:
+                    final String value = "v" + random.nextInt(100);
+                    final String previous = reference.put(key, value);
+                    if (previous != null) referenceSize -= previous.length();
+                    referenceSize += value.length();
+                    //evict least recently used like the cache does
+                    final Iterator<Map.Entry<Integer, String>> it = reference.entrySet().iterator();
+                    while (referenceSize > maxSize * 3 && it.hasNext()) {
+                        referenceSize -= it.next().getValue().length();
+                        it.remove();
+                    }
+                    assertEquals(previous, cache.put(key, value));
+                    break;
+            }
+            assertEquals(reference.size(), cache.count());
+            assertEquals(referenceSize, cache.size());
+        }
+        for (Map.Entry<Integer, String> entry : reference.entrySet()) {
+            assertTrue(cache.containsKey(entry.getKey()));
+        }
+    }
+
+    /**
+     * @return keys whose home slot in table with mask is slot, they collide and probe past end of table
+     */
+    private static int[] keysWithHome(int slot, int count) {
+        final int[] keys = new int[count];
+        int found = 0;
+        for (int key = 0; found < count; key++) {
+            if ((hash(key) & INITIAL_MASK) == slot) keys[found++] = key;
+        }
+        return keys;
+    }
+
+    /** Same hash as the cache uses */
+    private static int hash(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static class Removal {
+        final boolean evicted;
+        final int key;
+        final String oldValue;
+        final String newValue;
+
+        Removal(boolean evicted, int key, String oldValue, String newValue) {
+            this.evicted = evicted;
+            this.key = key;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Removal)) return false;
+            final Removal r = (Removal) o;
+            return evicted == r.evicted && key == r.key && oldValue.equals(r.oldValue)
+                    && (newValue == null ? r.newValue == null : newValue.equals(r.newValue));
+        }
+
+        @Override
+        public int hashCode() {
+            return key;
+        }
+
+        @Override
+        public String toString() {
+            return (evicted ? "evicted " : "removed ") + key + "=" + oldValue + "->" + newValue;
+        }
+    }
+
+    private static class RecordingCache extends IntLruCache<String> {
+        final ArrayList<Removal> mRemoved = new ArrayList<Removal>();
+
+        RecordingCache(long maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(int key, String value) {
+            return value.length();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, int key, String oldValue, String newValue) {
+            mRemoved.add(new Removal(evicted, key, oldValue, newValue));
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package com.jason.treadmills.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Created by marco.granatiero on 03/02/2015.
  */
 public class GameEntity {
+    private static final AtomicLong sNextId = new AtomicLong();
+
     public int imageResId;
     public int titleResId;
 
+    /** Assigned at creation, differs also for entities showing same image and title */
+    private final long mId = sNextId.getAndIncrement();
+
     public GameEntity(int imageResId, int titleResId){
         this.imageResId = imageResId;
         this.titleResId = titleResId;
     }
+
+    /**
+     * @return id unique among all entities, it doesn't change when image or title changes
+     */
+    public long getStableId() {
+        return mId;
+    }
 }
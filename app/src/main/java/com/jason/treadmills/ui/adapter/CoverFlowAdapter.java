@@ -4,16 +4,16 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.jason.treadmills.R;
 import com.jason.treadmills.model.GameEntity;
+import com.jason.treadmills.ui.viewcoverflow.ItemChangeAdapter;
 
 import java.util.ArrayList;
 
-public class CoverFlowAdapter extends BaseAdapter {
+public class CoverFlowAdapter extends ItemChangeAdapter {
 	
 	private ArrayList<GameEntity> mData = new ArrayList<>(0);
 	private Context mContext;
@@ -38,7 +38,12 @@ public class CoverFlowAdapter extends BaseAdapter {
 
 	@Override
 	public long getItemId(int pos) {
-		return pos;
+		return mData.get(pos).getStableId();
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
 	}
 
 	@Override
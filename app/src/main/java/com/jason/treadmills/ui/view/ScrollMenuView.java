@@ -7,7 +7,6 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.support.v4.view.GestureDetectorCompat;
 import android.support.v4.view.MotionEventCompat;
-import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.EdgeEffectCompat;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -23,6 +22,7 @@ import android.widget.HorizontalScrollView;
 import android.widget.ImageButton;
 import android.widget.OverScroller;
 
+import com.jason.treadmills.utils.FrameScheduler;
 import com.jason.treadmills.utils.Logger;
 
 public class ScrollMenuView extends ViewGroup{
@@ -267,14 +267,14 @@ public class ScrollMenuView extends ViewGroup{
         if (mScrollX > maxX) {
             // 超出了右边界，弹回
             mScroller.startScroll(mScrollX, 0, maxX - mScrollX, 0);
-            ViewCompat.postInvalidateOnAnimation(this);
+            startScrollFrames();
         } else if (mScrollX < 0) {
             // 超出了左边界，弹回
             mScroller.startScroll(mScrollX, 0, -mScrollX, 0);
-            ViewCompat.postInvalidateOnAnimation(this);
+            startScrollFrames();
         } else if (Math.abs(velocityX) + Math.abs(velocityY) >= mMinFlingVelocity && maxX > 0) {
             mScroller.fling(mScrollX, mScrollY, (int) velocityX, (int)velocityY, Integer.MIN_VALUE,Integer.MAX_VALUE, Integer.MIN_VALUE,Integer.MAX_VALUE);
-            ViewCompat.postInvalidateOnAnimation(this);
+            startScrollFrames();
         }
 
     }
@@ -396,7 +396,7 @@ public class ScrollMenuView extends ViewGroup{
             dx = Math.max(0, Math.min(scrollX + dx, maxX)) - scrollX;
 
             mScroller.startScroll(scrollX, (int)mLastFocusY, dx, 0);
-            ViewCompat.postInvalidateOnAnimation(this);
+            startScrollFrames();
         } else {
             if (!mScroller.isFinished()) {
                 mScroller.abortAnimation();
@@ -406,14 +406,27 @@ public class ScrollMenuView extends ViewGroup{
         mLastScroll = AnimationUtils.currentAnimationTimeMillis();
     }
 
-    @Override
-    public void computeScroll() {
-        super.computeScroll();
-//        Logger.showErrorLog("computeScroll  ","....................----------------");
-        if (mScroller.computeScrollOffset()) {
+    /**
+     * Scroller is advanced once per display frame by shared {@link FrameScheduler}, instead of polling it in computeScroll
+     */
+    private void startScrollFrames() {
+        FrameScheduler.getDefault().postFrameCallback(mScrollFrameCallback);
+    }
+
+    private final FrameScheduler.FrameCallback mScrollFrameCallback = new FrameScheduler.FrameCallback() {
+        @Override
+        public boolean doFrame(long frameTimeNanos) {
+            if (!mScroller.computeScrollOffset()) return false;
             scrollTo(mScroller.getCurrX(), 0);
-            ViewCompat.postInvalidateOnAnimation(this);
+            return !mScroller.isFinished();
         }
+    };
+
+    @Override
+    protected void onDetachedFromWindow() {
+        FrameScheduler.getDefault().removeFrameCallback(mScrollFrameCallback);
+        mScroller.abortAnimation();
+        super.onDetachedFromWindow();
     }
 
     // ----------------------------------------------------------------------
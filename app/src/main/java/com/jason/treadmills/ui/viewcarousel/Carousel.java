@@ -1,5 +1,6 @@
 package com.jason.treadmills.ui.viewcarousel;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -14,7 +15,6 @@ import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.Shader.TileMode;
 import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.ContextMenu.ContextMenuInfo;
@@ -31,16 +31,19 @@ import android.view.animation.Transformation;
 import android.widget.BaseAdapter;
 
 import com.jason.treadmills.R;
+import com.jason.treadmills.utils.BitmapPool;
+import com.jason.treadmills.utils.FrameScheduler;
+import com.jason.treadmills.utils.IntLruCache;
+import com.jason.treadmills.utils.TrimMemoryHelper;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 /**
  *
  * @author kushnarev Carousel class
  */
-public class Carousel extends CarouselSpinner implements GestureDetector.OnGestureListener {
+public class Carousel extends CarouselSpinner implements GestureDetector.OnGestureListener,
+		TrimMemoryHelper.OnTrimMemoryListener {
 
 	// Static private members
 
@@ -86,6 +89,16 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	 */
 	private static final int IMAGE_MAX_WIDTH = 200;
 
+	/**
+	 * Frame times are in nanoseconds, rotator works in milliseconds
+	 */
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * Item closer to the front than this angle is aligned
+	 */
+	private static final float SLOT_TOLERANCE = 0.01f;
+
 	/**
 	 * The info for adapter context menu
 	 */
@@ -126,7 +139,24 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	/**
 	 * Executes the delta rotations from a fling or scroll movement.
 	 */
-	private FlingRotateRunnable mFlingRunnable = new FlingRotateRunnable();
+	private FlingRotateCallback mFlingCallback = new FlingRotateCallback();
+
+	/**
+	 * Runs rotation once per display frame.
+	 */
+	private FrameScheduler mFrameScheduler;
+
+	/**
+	 * Angles and coordinates of items on the ring.
+	 */
+	private final CarouselRing mRing = new CarouselRing();
+
+	/**
+	 * Children indices in drawing order, computed once per frame.
+	 */
+	private int[] mDrawingOrder = new int[0];
+	private long[] mDrawingOrderKeys = new long[0];
+	private int mDrawingOrderCount = -1;
 
 	/**
 	 * Helper for detecting touch gestures.
@@ -154,6 +184,34 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	 */
 	private int mMinQuantity = MIN_QUANTITY;
 
+	/**
+	 * Number of slots on the ring of virtualized carousel, 0 puts all items
+	 * on the ring
+	 */
+	private int mVisibleSlots;
+
+	/**
+	 * If adapter has more items than visible slots, then slots show a window
+	 * of items around the front and are rebound as they pass the back
+	 */
+	private boolean mVirtualized;
+
+	/**
+	 * Images of virtualized carousel are prepared one per message, so their
+	 * cost is spread between frames and doesn't grow with rotation speed
+	 */
+	private final Runnable mPrepareImages = new Runnable() {
+		@Override
+		public void run() {
+			mPrepareImagesPosted = false;
+			if (!mVirtualized || getChildCount() == 0 || !(mAdapter instanceof ImageAdapter)) return;
+
+			final int front = getPositionOfSlot(mRing.getNearestSlot());
+			if (((ImageAdapter) mAdapter).prepareNextImage(front)) scheduleImagePreparation();
+		}
+	};
+	private boolean mPrepareImagesPosted;
+
 	/**
 	 * If true, we have received the "invoke" (center or enter buttons) key
 	 * down. This is checked before we action on the "invoke" key up, and is
@@ -200,6 +258,18 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	 */
 	private boolean mUseReflection;
 
+	/**
+	 * Registration of memory trim callbacks, null when not registered
+	 */
+	private Object mTrimRegistration;
+
+	/**
+	 * Bytes released by memory trim events
+	 */
+	private long mLastTrimReleasedBytes;
+	private long mTotalTrimReleasedBytes;
+	private int mTrimEventCount;
+
 	// Constructors
 
 	public Carousel(Context context) {
@@ -249,7 +319,12 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		mMinQuantity = min < MIN_QUANTITY ? MIN_QUANTITY : min;
 		mMaxQuantity = max > MAX_QUANTITY ? MAX_QUANTITY : max;
 
-		if (arr.length() < mMinQuantity || arr.length() > mMaxQuantity) throw new IllegalArgumentException(
+		int visibleSlots = arr.getInteger(R.styleable.Carousel_visibleSlots, 0);
+		if (visibleSlots > 0) mVisibleSlots = clampSlots(visibleSlots);
+
+		// Virtualized carousel takes any number of items, only its slots are limited
+		if (images.length() < mMinQuantity
+				|| (mVisibleSlots == 0 && images.length() > mMaxQuantity)) throw new IllegalArgumentException(
 				"Invalid set of items.");
 
 		// Initialize image adapter
@@ -345,8 +420,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	public boolean showContextMenu() {
 
 		if (isPressed() && mSelectedPosition >= 0) {
-			int index = mSelectedPosition - mFirstPosition;
-			View v = getChildAt(index);
+			View v = getChildForPosition(mSelectedPosition);
 			return dispatchLongPress(v, mSelectedPosition, mSelectedRowId);
 		}
 
@@ -400,9 +474,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 						}
 					}, ViewConfiguration.getPressedStateDuration());
 
-					int selectedIndex = mSelectedPosition - mFirstPosition;
-					System.out.println("The key is:" + selectedIndex);
-					performItemClick(getChildAt(selectedIndex), mSelectedPosition,
+					performItemClick(getChildForPosition(mSelectedPosition), mSelectedPosition,
 							mAdapter.getItemId(mSelectedPosition));
 				}
 			}
@@ -485,44 +557,59 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		return event.dispatch(this, null, null);
 	}
 
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		computeDrawingOrder();
+		super.dispatchDraw(canvas);
+	}
+
 	/**
 	 * Index of the child to draw for this iteration
 	 */
 	@Override
 	protected int getChildDrawingOrder(int childCount, int i) {
+		if (mDrawingOrderCount != childCount) computeDrawingOrder();
+		return mDrawingOrder[i];
+	}
 
-		// Sort Carousel items by z coordinate in reverse order
-		ArrayList<CarouselItem> sl = new ArrayList<CarouselItem>();
-		for (int j = 0;j < childCount;j++) {
-			CarouselItem view = (CarouselItem) getAdapter().getView(j, null, null);
-			if (i == 0) view.setDrawn(false);
-			sl.add((CarouselItem) getAdapter().getView(j, null, null));
+	/**
+	 * Sorts children by z coordinate in reverse order, farthest child is
+	 * drawn first. Runs once per frame, sort keys pack z and child index into
+	 * one long, so primitive sort is used and nothing is allocated.
+	 */
+	private void computeDrawingOrder() {
+		final int childCount = getChildCount();
+		if (mDrawingOrder.length < childCount) {
+			mDrawingOrder = new int[childCount];
+			mDrawingOrderKeys = new long[childCount];
 		}
-
-		Collections.sort(sl);
-
-		// Get first undrawn item in array and get result index
-		int idx = 0;
-
-		for (CarouselItem civ : sl) {
-			if (!civ.isDrawn()) {
-				civ.setDrawn(true);
-				idx = civ.getIndex();
-				break;
-			}
+		mDrawingOrderCount = childCount;
+
+		for (int j = 0; j < childCount; j++) {
+			final float z = ((CarouselItem) getChildAt(j)).getItemZ();
+			// Bits of float reordered so they compare like the floats
+			int bits = Float.floatToIntBits(z);
+			bits ^= (bits >> 31) & 0x7fffffff;
+			// Inverted index, equal z keeps child order after reading keys backwards
+			mDrawingOrderKeys[j] = ((long) bits << 32) | (~j & 0xffffffffL);
 		}
+		Arrays.sort(mDrawingOrderKeys, 0, childCount);
 
-		return idx;
-
+		for (int j = 0; j < childCount; j++) {
+			mDrawingOrder[j] = ~(int) mDrawingOrderKeys[childCount - 1 - j];
+		}
 	}
 
 	/**
-	 * Transform an item depending on it's coordinates
+	 * Transform an item depending on it's coordinates. Runs for every child
+	 * on every frame, so it only writes into the transformation and into the
+	 * item's own matrix and doesn't invalidate anything.
 	 */
-	@SuppressWarnings("deprecation")
 	@Override
 	protected boolean getChildStaticTransformation(View child, Transformation transformation) {
 
+		final CarouselItem item = (CarouselItem) child;
+
 		transformation.clear();
 		transformation.setTransformationType(Transformation.TYPE_MATRIX);
 
@@ -535,48 +622,124 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		// Translate the item to it's coordinates
 		final Matrix matrix = transformation.getMatrix();
 
-		mCamera.translate(((CarouselItem) child).getItemX(), ((CarouselItem) child).getItemY(),
-				((CarouselItem) child).getItemZ());
-		((CarouselItem) child).getImageView().setAlpha(
-				getAlphaValue(((CarouselItem) child).getCurrentAngle()));
+		mCamera.translate(item.getItemX(), item.getItemY(), item.getItemZ());
 		// Align the item
 		mCamera.getMatrix(matrix);
 
 		matrix.preTranslate(-centerX, -centerY);
 		matrix.postTranslate(centerX, centerY);
 
-		float[] values = new float[9];
-		matrix.getValues(values);
-
 		// Restore camera
 		mCamera.restore();
 
-		Matrix mm = new Matrix();
-		mm.setValues(values);
-		((CarouselItem) child).setCIMatrix(mm);
-
-		// http://code.google.com/p/android/issues/detail?id=35178
-		child.invalidate();
+		// Alpha is set on image when item moves, see updateImageAlpha
+		item.setCIMatrix(matrix);
 		return true;
 	}
 
+	// Frame scheduling
+
 	/**
-	 * The alpha below 255 by the angle
-	 *
-	 * @param angleOffset
-	 * @return
+	 * @return scheduler which runs rotation animations, shared scheduler of
+	 *         main thread by default
+	 */
+	private FrameScheduler getFrameScheduler() {
+		if (mFrameScheduler == null) mFrameScheduler = FrameScheduler.getDefault();
+		return mFrameScheduler;
+	}
+
+	/**
+	 * Use other scheduler for rotation animations, for example one driven by
+	 * fake clock in tests.
+	 */
+	public void setFrameScheduler(FrameScheduler frameScheduler) {
+		if (frameScheduler == null) throw new IllegalArgumentException("Frame scheduler must not be null");
+		mFlingCallback.stop(false);
+		mFrameScheduler = frameScheduler;
+	}
+
+	// Memory trimming
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mTrimRegistration == null) mTrimRegistration = TrimMemoryHelper.register(getContext(), this);
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		mFlingCallback.stop(false);
+		removeCallbacks(mPrepareImages);
+		mPrepareImagesPosted = false;
+		TrimMemoryHelper.unregister(getContext(), mTrimRegistration);
+		mTrimRegistration = null;
+		super.onDetachedFromWindow();
+	}
+
+	/**
+	 * Items on the ring are kept, the shared {@link BitmapPool}, recycled views and prepared
+	 * images of virtualized carousel are released.
 	 */
-	private int getAlphaValue(float angleOffset) {
-//		int alpha = 0;
-		angleOffset = angleOffset % 360;
-		if (angleOffset > 180) {
-			angleOffset = 360 - angleOffset;
+	@Override
+	public void onTrimMemory(int level) {
+		final long released = BitmapPool.getDefault().trimMemory(level);
+
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			mRecycler.clear();
+			// Prepared again as the ring rotates
+			if (mAdapter instanceof ImageAdapter) ((ImageAdapter) mAdapter).evictPrepared();
 		}
-		return 255 - (int) angleOffset;
+
+		mLastTrimReleasedBytes = released;
+		mTotalTrimReleasedBytes += released;
+		mTrimEventCount++;
+	}
+
+	/**
+	 * @return bytes of bitmaps released by last memory trim event
+	 */
+	public long getLastTrimReleasedBytes() {
+		return mLastTrimReleasedBytes;
+	}
+
+	/**
+	 * @return bytes of bitmaps released by all memory trim events
+	 */
+	public long getTotalTrimReleasedBytes() {
+		return mTotalTrimReleasedBytes;
+	}
+
+	/**
+	 * @return number of memory trim events received
+	 */
+	public int getTrimEventCount() {
+		return mTrimEventCount;
 	}
 
 	// CarouselAdapter overrides
 
+	/**
+	 * Children are in order of ring slots, not of adapter positions
+	 */
+	@Override
+	public View getSelectedView() {
+		if (mItemCount > 0 && mSelectedPosition >= 0) {
+			return getChildForPosition(mSelectedPosition);
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public int getPositionForView(View view) {
+		View listItem = view;
+		while (listItem.getParent() != this) {
+			if (!(listItem.getParent() instanceof View)) return INVALID_POSITION;
+			listItem = (View) listItem.getParent();
+		}
+		return ((CarouselItem) listItem).getIndex();
+	}
+
 	/**
 	 * Setting up images
 	 */
@@ -614,20 +777,33 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		// makeAndAddView(i, angle);
 		// }
 
-		float angleUnit = (Math.round(360.0f / count) * 1000000) / 1000000;
-
-		float angleOffset = mSelectedPosition * angleUnit;
+		// Large adapter is shown through fixed number of slots
+		final boolean virtualized = mVisibleSlots > 0 && count > mVisibleSlots;
+		final int slots = virtualized ? mVisibleSlots : count;
+
+		// Ring is turned to selected item, unless it is already nearest to the
+		// front, then relayout doesn't disturb running rotation
+		final boolean keepRotation = mRing.getCount() == slots && mVirtualized == virtualized
+				&& getPositionOfSlot(mRing.getNearestSlot()) == mSelectedPosition;
+		mVirtualized = virtualized;
+		mRing.setCount(slots);
+		mRing.setGeometry(mInLayout ? getMeasuredWidth() : getWidth(), getHeight(), mTheta);
+		if (keepRotation) {
+			mRing.rotate(0);
+		} else {
+			mRing.setFrontItem(mSelectedPosition);
+		}
 
-		for (int i = 0;i < count;i++) {
-			float angle;
-			angle = angleUnit * i - angleOffset;
-			if (angle < 0.0f) angle = 360.0f + angle;
-			makeAndAddView(i, angle);
+		// Child index is the slot of the child
+		for (int slot = 0;slot < slots;slot++) {
+			makeAndAddView(getPositionOfSlot(slot), slot);
 		}
 
 		// Flush any cached views that did not get reused above
 		mRecycler.clear();
 
+		if (virtualized) scheduleImagePreparation();
+
 		invalidate();
 
 		setNextSelectedPositionInt(mSelectedPosition);
@@ -675,7 +851,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 	// Rotation class for the Carousel
 
-	private class FlingRotateRunnable implements Runnable {
+	private class FlingRotateCallback implements FrameScheduler.FrameCallback {
 
 		/**
 		 * Tracks the decay of a fling rotation
@@ -690,13 +866,13 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		/**
 		 * Constructor
 		 */
-		public FlingRotateRunnable() {
+		public FlingRotateCallback() {
 			mRotator = new Rotator(getContext());
 		}
 
 		private void startCommon() {
 			// Remove any pending flings
-			removeCallbacks(this);
+			getFrameScheduler().removeFrameCallback(this);
 		}
 
 //		public void startUsingVelocity(float initialVelocity) {
@@ -718,13 +894,13 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 			mLastFlingAngle = 0;
 			synchronized (this) {
-				mRotator.startRotate(0.0f, -deltaAngle, mAnimationDuration);
+				mRotator.startRotate(0.0f, -deltaAngle, mAnimationDuration, getFrameScheduler().now() / NANOS_PER_MILLI);
 			}
-			post(this);
+			getFrameScheduler().postFrameCallback(this);
 		}
 
 		public void stop(boolean scrollIntoSlots) {
-			removeCallbacks(this);
+			getFrameScheduler().removeFrameCallback(this);
 			endFling(scrollIntoSlots);
 		}
 
@@ -740,10 +916,11 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 			if (scrollIntoSlots) scrollIntoSlots();
 		}
 
-		public void run() {
+		@Override
+		public boolean doFrame(long frameTimeNanos) {
 			if (Carousel.this.getChildCount() == 0) {
 				endFling(true);
-				return;
+				return false;
 			}
 
 			mShouldStopFling = false;
@@ -753,7 +930,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 			boolean more;
 			synchronized (this) {
 				rotator = mRotator;
-				more = rotator.computeAngleOffset();
+				more = rotator.computeAngleOffset(frameTimeNanos / NANOS_PER_MILLI);
 				angle = rotator.getCurrAngle();
 			}
 
@@ -768,10 +945,11 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 			if (more && !mShouldStopFling) {
 				mLastFlingAngle = angle;
-				post(this);
+				return true;
 			} else {
 				mLastFlingAngle = 0.0f;
 				endFling(true);
+				return false;
 			}
 
 		}
@@ -783,10 +961,36 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	private class ImageAdapter extends BaseAdapter {
 
 		private Context mContext;
+
+		/**
+		 * Items built up front, null when items are bound lazily to slots of
+		 * virtualized carousel
+		 */
 		private CarouselItem[] mImages;
 
+		/**
+		 * Images of virtualized carousel prepared ahead by adapter position,
+		 * rebound items only take them from here. Images of items which left
+		 * the ring come back here too. Null when items are built up front
+		 */
+		private IntLruCache<Bitmap> mPrepared;
+
+		/**
+		 * Drawables of items, bitmaps are built from them when image is
+		 * prepared
+		 */
+		private int[] mImageIds;
+		private boolean mReflected;
+
+		private final Canvas mCanvas = new Canvas();
+		private final Matrix mScaleMatrix = new Matrix();
+		private final Paint mGapPaint = new Paint();
+		private final Paint mReflectionPaint = new Paint();
+
 		public ImageAdapter(Context c) {
 			mContext = c;
+			// Set the Transfer mode to be porter duff and destination in
+			mReflectionPaint.setXfermode(new PorterDuffXfermode(Mode.DST_IN));
 		}
 
 		@SuppressWarnings("unused")
@@ -799,85 +1003,192 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 			if (names != null) if (array.length() != names.length()) throw new RuntimeException(
 					"Images and names arrays length doesn't match");
 
-			final int reflectionGap = 4;
+			mReflected = reflected;
+			mImageIds = new int[array.length()];
+			for (int i = 0;i < array.length();i++) {
+				mImageIds[i] = array.getResourceId(i, 0);
+			}
 
-			Drawable[] drawables = new Drawable[array.length()];
-			mImages = new CarouselItem[array.length()];
+			// Bitmaps of all items of virtualized carousel would not fit in memory
+			setLazy(mVisibleSlots > 0 && mImageIds.length > mVisibleSlots);
 
-			for (int i = 0;i < array.length();i++) {
-				drawables[i] = array.getDrawable(i);
-				Bitmap originalImage = ((BitmapDrawable) drawables[i]).getBitmap();
-				int bmpWidth = originalImage.getWidth();
-				int bmpHeight = originalImage.getHeight();
-				if (bmpWidth > IMAGE_MAX_WIDTH || bmpHeight > IMAGE_MAX_WIDTH) {
-					float scaleWidth = (float) IMAGE_MAX_WIDTH / bmpWidth; // 按固定大小缩�?
-					float scaleHeight = (float) IMAGE_MAX_WIDTH / bmpHeight; //
-					Matrix matrix = new Matrix();
-					matrix.postScale(scaleWidth, scaleHeight);// 产生缩放后的Bitmap对象
-					Bitmap resizeBitmap = Bitmap.createBitmap(originalImage, 0, 0, bmpWidth,
-                            bmpHeight, matrix, false);
-					originalImage.recycle();
-					originalImage = resizeBitmap;
+		}
+
+		/**
+		 * Build all items up front or bind them lazily to the views passed to
+		 * getView
+		 */
+		void setLazy(boolean lazy) {
+			if (lazy) {
+				mImages = null;
+				// Window around the front without slots on the ring, and
+				// images which just left the ring
+				final int size = 2 * mVisibleSlots + 2;
+				if (mPrepared != null) {
+					mPrepared.resize(size);
+				} else {
+					mPrepared = new IntLruCache<Bitmap>(size) {
+						@Override
+						protected void entryRemoved(boolean evicted, int key, Bitmap oldValue, Bitmap newValue) {
+							if (oldValue != newValue) releaseImage(oldValue);
+						}
+					};
 				}
-				if (reflected) {
-					int width = originalImage.getWidth();
-					int height = originalImage.getHeight();
-
-					// This will not scale but will flip on the Y axis
-					Matrix matrix = new Matrix();
-					matrix.preScale(1, -1);
-
-					// Create a Bitmap with the flip matrix applied to it.
-					// We only want the bottom half of the image
-					Bitmap reflectionImage = Bitmap.createBitmap(originalImage, 0, height / 2,
-                            width, height / 2, matrix, false);
-
-					// Create a new bitmap with same width but taller to fit
-					// reflection
-					Bitmap bitmapWithReflection = Bitmap.createBitmap(width, (height + height / 2),
-                            Config.ARGB_8888);
-
-					// Create a new Canvas with the bitmap that's big enough for
-					// the image plus gap plus reflection
-					Canvas canvas = new Canvas(bitmapWithReflection);
-					// Draw in the original image
-					canvas.drawBitmap(originalImage, 0, 0, null);
-					// Draw in the gap
-					Paint deafaultPaint = new Paint();
-					canvas.drawRect(0, height, width, height + reflectionGap, deafaultPaint);
-					// Draw in the reflection
-					canvas.drawBitmap(reflectionImage, 0, height + reflectionGap, null);
-
-					// Create a shader that is a linear gradient that covers the
-					// reflection
-					Paint paint = new Paint();
-					LinearGradient shader = new LinearGradient(0, originalImage.getHeight(), 0,
-							bitmapWithReflection.getHeight() + reflectionGap, 0x70ffffff,
-							0x00ffffff, TileMode.CLAMP);
-					// Set the paint to use this shader (linear gradient)
-					paint.setShader(shader);
-					// Set the Transfer mode to be porter duff and destination
-					// in
-					paint.setXfermode(new PorterDuffXfermode(Mode.DST_IN));
-					// Draw a rectangle using the paint with our linear gradient
-					canvas.drawRect(0, height, width, bitmapWithReflection.getHeight()
-							+ reflectionGap, paint);
-
-					originalImage = bitmapWithReflection;
+			} else {
+				if (mPrepared != null) {
+					mPrepared.evictAll();
+					mPrepared = null;
+				}
+				if (mImages == null) {
+					mImages = new CarouselItem[mImageIds.length];
+					for (int i = 0;i < mImageIds.length;i++) {
+						mImages[i] = show(new CarouselItem(mContext), i, createImage(i));
+					}
 				}
+			}
+		}
+
+		/**
+		 * Show prepared image of position in item, item stays empty until its
+		 * image is prepared, so binding never builds a bitmap. Image item
+		 * showed before goes back to prepared images.
+		 */
+		private CarouselItem bind(CarouselItem item, int position) {
+			final Bitmap previous = item.getBoundBitmap();
+			if (previous != null) {
+				if (item.getIndex() == position) return item;
+				mPrepared.put(item.getIndex(), previous);
+			}
+
+			final Bitmap image = mPrepared.remove(position);
+			if (image == null) scheduleImagePreparation();
+			return show(item, position, image);
+		}
 
-				CarouselItem item = new CarouselItem(mContext);
-				item.setIndex(i);
-				item.setImageBitmap(originalImage);
-				mImages[i] = item;
+		private CarouselItem show(CarouselItem item, int position, Bitmap image) {
+			item.setIndex(position);
+			item.setImageBitmap(image);
+			item.setBoundBitmap(image);
+			return item;
+		}
 
+		/**
+		 * Prepares image of one position nearest to front which has none
+		 * yet, positions up to number of slots away on both sides are kept
+		 * prepared
+		 *
+		 * @return true if image was prepared, more may be missing
+		 */
+		boolean prepareNextImage(int front) {
+			if (mPrepared == null) return false;
+
+			final int count = mImageIds.length;
+			for (int i = 0;i <= 2 * mVisibleSlots;i++) {
+				// front, front + 1, front - 1, front + 2 ...
+				final int offset = (i & 1) == 0 ? -i / 2 : i / 2 + 1;
+				final int position = ((front + offset) % count + count) % count;
+				if (mPrepared.containsKey(position)) continue;
+
+				final CarouselItem child = getChildForPosition(position);
+				if (child != null && child.getBoundBitmap() != null) continue;
+
+				final Bitmap image = createImage(position);
+				if (child != null) show(child, position, image);
+				else mPrepared.put(position, image);
+				return true;
 			}
+			return false;
+		}
+
+		/**
+		 * Drop prepared images which are not on the ring
+		 */
+		void evictPrepared() {
+			if (mPrepared != null) mPrepared.evictAll();
+		}
+
+		/**
+		 * Images drawn by adapter are from the pool and go back there, bitmaps
+		 * from resources are immutable, shared by drawable cache and are never
+		 * pooled
+		 */
+		private void releaseImage(Bitmap image) {
+			if (image.isMutable()) BitmapPool.getDefault().put(image);
+		}
+
+		private Bitmap createImage(int position) {
+			return createImage(((BitmapDrawable) mContext.getResources().getDrawable(mImageIds[position])).getBitmap());
+		}
 
+		/**
+		 * @return Scaled and reflected copy of source drawn into bitmap from the
+		 *         pool, or source itself if it needs neither
+		 */
+		private Bitmap createImage(Bitmap source) {
+			final int reflectionGap = 4;
+			final BitmapPool pool = BitmapPool.getDefault();
+
+			Bitmap originalImage = source;
+			boolean isPooled = false;
+			int bmpWidth = originalImage.getWidth();
+			int bmpHeight = originalImage.getHeight();
+			if (bmpWidth > IMAGE_MAX_WIDTH || bmpHeight > IMAGE_MAX_WIDTH) {
+				float scaleWidth = (float) IMAGE_MAX_WIDTH / bmpWidth; // 按固定大小缩�?
+				float scaleHeight = (float) IMAGE_MAX_WIDTH / bmpHeight; //
+				mScaleMatrix.setScale(scaleWidth, scaleHeight);// 产生缩放后的Bitmap对象
+				Bitmap resizeBitmap = pool.get(IMAGE_MAX_WIDTH, IMAGE_MAX_WIDTH, Config.ARGB_8888);
+				mCanvas.setBitmap(resizeBitmap);
+				mCanvas.drawBitmap(originalImage, mScaleMatrix, null);
+				originalImage = resizeBitmap;
+				isPooled = true;
+			}
+			if (mReflected) {
+				int width = originalImage.getWidth();
+				int height = originalImage.getHeight();
+
+				// Create a new bitmap with same width but taller to fit
+				// reflection
+				Bitmap bitmapWithReflection = pool.get(width, (height + height / 2),
+                        Config.ARGB_8888);
+
+				// Draw into the bitmap that's big enough for
+				// the image plus gap plus reflection
+				Canvas canvas = mCanvas;
+				canvas.setBitmap(bitmapWithReflection);
+				// Draw in the original image
+				canvas.drawBitmap(originalImage, 0, 0, null);
+				// Draw in the gap
+				canvas.drawRect(0, height, width, height + reflectionGap, mGapPaint);
+				// Draw in the reflection, bottom half of the image flipped on the Y axis.
+				// It is drawn directly through the flip, so no temporary bitmap is needed
+				canvas.save();
+				canvas.clipRect(0, height + reflectionGap, width, bitmapWithReflection.getHeight());
+				canvas.translate(0, height + reflectionGap + height);
+				canvas.scale(1, -1);
+				canvas.drawBitmap(originalImage, 0, 0, null);
+				canvas.restore();
+
+				// Create a shader that is a linear gradient that covers the
+				// reflection
+				LinearGradient shader = new LinearGradient(0, originalImage.getHeight(), 0,
+						bitmapWithReflection.getHeight() + reflectionGap, 0x70ffffff,
+						0x00ffffff, TileMode.CLAMP);
+				// Set the paint to use this shader (linear gradient)
+				mReflectionPaint.setShader(shader);
+				// Draw a rectangle using the paint with our linear gradient
+				canvas.drawRect(0, height, width, bitmapWithReflection.getHeight()
+						+ reflectionGap, mReflectionPaint);
+
+				// Scaled copy was only temporary, image from resources is left untouched
+				if (isPooled) pool.put(originalImage);
+				originalImage = bitmapWithReflection;
+			}
+			return originalImage;
 		}
 
 		public int getCount() {
-			if (mImages == null) return 0;
-			else return mImages.length;
+			if (mImageIds == null) return 0;
+			else return mImageIds.length;
 		}
 
 		public Object getItem(int position) {
@@ -889,7 +1200,10 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		}
 
 		public View getView(int position, View convertView, ViewGroup parent) {
-			return mImages[position];
+			if (mImages != null) return mImages[position];
+
+			// Slot view is rebound to the item which replaces it
+			return bind(convertView != null ? (CarouselItem) convertView : new CarouselItem(mContext), position);
 		}
 
 	}
@@ -898,14 +1212,14 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 	public boolean onDown(MotionEvent e) {
 		// Kill any existing fling/scroll
-		mFlingRunnable.stop(false);
+		mFlingCallback.stop(false);
 
 		// /// Don't know yet what for it is
 		// Get the item's view that was touched
 		mDownTouchPosition = pointToPosition((int) e.getX(), (int) e.getY());
 
-		if (mDownTouchPosition >= 0) {
-			mDownTouchView = getChildAt(mDownTouchPosition - mFirstPosition);
+		mDownTouchView = getChildForPosition(mDownTouchPosition);
+		if (mDownTouchView != null) {
 			mDownTouchView.setPressed(true);
 		}
 
@@ -930,8 +1244,8 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		//
 		// // Fling the gallery!
 		//
-		// //mFlingRunnable.startUsingVelocity((int) -velocityX);
-		// mFlingRunnable.startUsingVelocity((int) velocityX);
+		// //mFlingCallback.startUsingVelocity((int) -velocityX);
+		// mFlingCallback.startUsingVelocity((int) velocityX);
 
 		return true;
 	}
@@ -996,14 +1310,8 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 			if (mDownTouchPosition == mSelectedPosition) {
 				performItemClick(mDownTouchView, mDownTouchPosition,
 						mAdapter.getItemId(mDownTouchPosition));
-			} else if (mDownTouchPosition != mSelectedPosition) {
-				int count = getAdapter().getCount();
-				int circleNum = (mSelectedPosition + count - mDownTouchPosition) % count;
-				float circleAngle = circleNum * 360 / count;
-				if (circleAngle > 180.0f) {
-					circleAngle -= 360.0f;
-				}
-				mFlingRunnable.startUsingDistance(circleAngle);
+			} else if (mDownTouchView != null) {
+				mFlingCallback.startUsingDistance(mRing.getDistanceToFront(((CarouselItem) mDownTouchView).getSlot()));
 			}
 			return true;
 		}
@@ -1029,21 +1337,6 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	public void onShowPress(MotionEvent e) {
 	}
 
-	private void Calculate3DPosition(CarouselItem child, int diameter, float angleOffset) {
-
-		angleOffset = angleOffset * (float) (Math.PI / 180.0f);
-
-		float x = -(float) (diameter / 2 * android.util.FloatMath.sin(angleOffset)) + diameter / 2
-				- child.getWidth() / 2;
-		float z = (float) (diameter / 2 * (1.0f - (float) android.util.FloatMath.cos(angleOffset)));
-		float y = (float) (-getHeight() / 2 + (float) (z * android.util.FloatMath.sin(mTheta)));
-
-		child.setItemX(x);
-		child.setItemZ(z);
-		child.setItemY(y);
-
-	}
-
 	/**
 	 * Figure out vertical placement based on mGravity
 	 *
@@ -1188,33 +1481,84 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
                 deltaX);
 	}
 
-	private void makeAndAddView(int position, float angleOffset) {
+	private void makeAndAddView(int position, int slot) {
 		CarouselItem child;
 
-		if (!mDataChanged) {
-			child = (CarouselItem) mRecycler.get(position);
-			if (child != null) {
+		// Views are recycled by slot, see recycleAllViews
+		final View scrap = mRecycler.get(slot);
 
-				// Position the view
-				setUpChild(child, child.getIndex(), angleOffset);
-			} else {
-				// Nothing found in the recycler -- ask the adapter for a view
-				child = (CarouselItem) mAdapter.getView(position, null, this);
-
-				// Position the view
-				setUpChild(child, child.getIndex(), angleOffset);
-			}
-			return;
+		if (!mDataChanged && scrap != null && ((CarouselItem) scrap).getIndex() == position) {
+			child = (CarouselItem) scrap;
+		} else {
+			// Ask the adapter for a view, it may rebind the one of the slot
+			child = (CarouselItem) mAdapter.getView(position, scrap, this);
+			child.setIndex(position);
+			if (scrap != null && scrap != child) removeDetachedView(scrap, false);
 		}
 
-		// Nothing found in the recycler -- ask the adapter for a view
-		child = (CarouselItem) mAdapter.getView(position, null, this);
-
 		// Position the view
-		setUpChild(child, child.getIndex(), angleOffset);
+		setUpChild(child, slot);
 
 	}
 
+	/**
+	 * @return Adapter position of item in ring slot
+	 */
+	private int getPositionOfSlot(int slot) {
+		if (!mVirtualized) return slot;
+		final int position = mRing.getItemOfSlot(slot) % mItemCount;
+		return position < 0 ? position + mItemCount : position;
+	}
+
+	/**
+	 * @return Child which shows adapter position, null if it is not on the
+	 *         ring
+	 */
+	private CarouselItem getChildForPosition(int position) {
+		for (int i = 0;i < getChildCount();i++) {
+			final CarouselItem child = (CarouselItem) getChildAt(i);
+			if (child.getIndex() == position) return child;
+		}
+		return null;
+	}
+
+	/**
+	 * Prepare images around the front in following messages
+	 */
+	private void scheduleImagePreparation() {
+		if (mPrepareImagesPosted) return;
+		mPrepareImagesPosted = true;
+		post(mPrepareImages);
+	}
+
+	/**
+	 * Slots of virtualized carousel which passed the back of the ring show
+	 * next items. Slot views are rebound by the adapter, so number of views
+	 * and work per frame don't depend on size of the adapter.
+	 */
+	private void rebindSlots() {
+		final boolean blockLayoutRequests = mBlockLayoutRequests;
+		mBlockLayoutRequests = true;
+		for (int slot = 0;slot < getChildCount();slot++) {
+			final CarouselItem child = (CarouselItem) getChildAt(slot);
+			final int position = getPositionOfSlot(slot);
+			if (child.getIndex() == position) continue;
+
+			final CarouselItem bound = (CarouselItem) mAdapter.getView(position, child, this);
+			bound.setIndex(position);
+			if (bound != child) {
+				if (child == mSelectedChild) mSelectedChild = null;
+				removeViewInLayout(child);
+				addViewInLayout(bound, slot, generateDefaultLayoutParams());
+			}
+			bound.setSelected(position == mSelectedPosition);
+			placeChild(bound, slot);
+		}
+		// Selected item may have been rebound into other view
+		if (mSelectedChild == null) mSelectedChild = getChildForPosition(mSelectedPosition);
+		mBlockLayoutRequests = blockLayoutRequests;
+	}
+
 	void onCancel() {
 		onUp();
 	}
@@ -1235,7 +1579,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	}
 
 	void onUp() {
-		if (mFlingRunnable.mRotator.isFinished()) {
+		if (mFlingCallback.mRotator.isFinished()) {
 			System.out.println("The is finish is:true");
 			scrollIntoSlots();
 		}
@@ -1248,44 +1592,21 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	 */
 	private void scrollIntoSlots() {
 		System.out.println("The scrollIntoSlots is: before");
-		// Nothing to do
-		if (getChildCount() == 0 || mSelectedChild == null) return;
+		// Nothing to do. Target is found from the ring, so it doesn't matter
+		// whether selected item is still on it
+		if (getChildCount() == 0) return;
 
-		// get nearest item to the 0 degrees angle
-		// Sort itmes and get nearest angle
-		float angle;
-		int position;
-
-		ArrayList<CarouselItem> arr = new ArrayList<CarouselItem>();
-
-		for (int i = 0;i < getAdapter().getCount();i++)
-			arr.add(((CarouselItem) getAdapter().getView(i, null, null)));
-
-		Collections.sort(arr, new Comparator<CarouselItem>() {
-
-            public int compare(CarouselItem c1, CarouselItem c2) {
-                int a1 = (int) c1.getCurrentAngle();
-                if (a1 > 180) a1 = 360 - a1;
-                int a2 = (int) c2.getCurrentAngle();
-                if (a2 > 180) a2 = 360 - a2;
-                return (a1 - a2);
-            }
-
-        });
-
-		angle = arr.get(0).getCurrentAngle();
-		System.out.println("angle==" + angle);
-		// Make it minimum to rotate
-		if (angle > 180.0f) angle = -(360.0f - angle);
+		// Nearest item to the 0 degrees angle follows from the rotation
+		final int slot = mRing.getNearestSlot();
+		final float distance = mRing.getDistanceToFront(slot);
 
 		// Start rotation if needed
-		if (angle != 0.0f) {
-			mFlingRunnable.startUsingDistance(-angle);
+		if (Math.abs(distance) > SLOT_TOLERANCE) {
+			mFlingCallback.startUsingDistance(distance);
 		} else {
-			// Set selected position
-			position = arr.get(0).getIndex();
-			System.out.println("The scrollIntoSlots is:" + position);
-			setSelectedPositionInt(position);
+			// Remove rounding error of rotation and set selected position
+			trackMotionScroll(distance);
+			setSelectedPositionInt(getPositionOfSlot(slot));
 			onFinishedMovement();
 		}
 
@@ -1293,15 +1614,11 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 	void scrollToChild(int i) {
 
-		CarouselItem view = (CarouselItem) getAdapter().getView(i, null, null);
-		float angle = view.getCurrentAngle();
-
-		if (angle == 0) return;
+		final float distance = mRing.getDistanceToFront(i);
 
-		if (angle > 180.0f) angle = 360.0f - angle;
-		else angle = -angle;
+		if (Math.abs(distance) <= SLOT_TOLERANCE) return;
 
-		mFlingRunnable.startUsingDistance(angle);
+		mFlingCallback.startUsingDistance(distance);
 
 	}
 
@@ -1346,6 +1663,41 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 		mAnimationDuration = animationDurationMillis;
 	}
 
+	/**
+	 * Show adapters with more items than slots through fixed number of slots
+	 * on the ring. Slot views are rebound as they pass the back of the ring, so
+	 * memory and work per frame don't grow with the adapter.
+	 *
+	 * @param slots
+	 *            Number of slots, limited by min and max quantity, 0 puts all
+	 *            items on the ring
+	 */
+	public void setVisibleSlots(int slots) {
+		final int visibleSlots = slots > 0 ? clampSlots(slots) : 0;
+		if (mVisibleSlots != visibleSlots) {
+			mVisibleSlots = visibleSlots;
+			if (mAdapter instanceof ImageAdapter) {
+				((ImageAdapter) mAdapter).setLazy(visibleSlots > 0 && mAdapter.getCount() > visibleSlots);
+			}
+			requestLayout();
+		}
+	}
+
+	public int getVisibleSlots() {
+		return mVisibleSlots;
+	}
+
+	/**
+	 * @return true if adapter has more items than slots on the ring
+	 */
+	public boolean isVirtualized() {
+		return mVirtualized;
+	}
+
+	private int clampSlots(int slots) {
+		return Math.max(mMinQuantity, Math.min(mMaxQuantity, slots));
+	}
+
 	public void setGravity(int gravity) {
 		if (mGravity != gravity) {
 			mGravity = gravity;
@@ -1359,33 +1711,25 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 	 *
 	 * @param child
 	 *            The view to position
-	 * @param angleOffset
-	 *            Offset from the selected position
+	 * @param slot
+	 *            Slot of the ring the view is shown in
 	 */
-	private void setUpChild(CarouselItem child, int index, float angleOffset) {
+	private void setUpChild(CarouselItem child, int slot) {
 
 		// Ignore any layout parameters for child, use wrap content
 		addViewInLayout(child, -1 /* index */, generateDefaultLayoutParams());
 
-		child.setSelected(index == mSelectedPosition);
-
-		int h;
-		int w;
-		int d;
-
-		if (mInLayout) {
-			w = child.getMeasuredWidth();
-			h = child.getMeasuredHeight();
-			d = getMeasuredWidth();
+		child.setSelected(child.getIndex() == mSelectedPosition);
 
-		} else {
-			w = child.getMeasuredWidth();
-			h = child.getMeasuredHeight();
-			d = getWidth();
-
-		}
+		placeChild(child, slot);
+	}
 
-		child.setCurrentAngle(angleOffset);
+	/**
+	 * Measure and lay out the child and attach it to its slot of the ring
+	 */
+	private void placeChild(CarouselItem child, int slot) {
+		int h = child.getMeasuredHeight();
+		int w = child.getMeasuredWidth();
 
 		// Measure child
 		child.measure(w, h);
@@ -1399,7 +1743,14 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 		child.layout(childLeft, childTop, w, h);
 
-		Calculate3DPosition(child, d, angleOffset);
+		child.setRingSlot(mRing, slot);
+		mRing.setItemWidth(slot, child.getWidth());
+		child.updateImageAlpha();
+
+		// Static transformation of moved item must be queried again also when
+		// its display list is reused,
+		// http://code.google.com/p/android/issues/detail?id=35178
+		child.invalidate();
 
 	}
 
@@ -1417,22 +1768,19 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 			return;
 		}
 
-		for (int i = 0;i < getAdapter().getCount();i++) {
-
-			CarouselItem child = (CarouselItem) getAdapter().getView(i, null, null);
-
-			float angle = child.getCurrentAngle();
-			angle += deltaAngle;
-
-			while (angle > 360.0f)
-				angle -= 360.0f;
-
-			while (angle < 0.0f)
-				angle += 360.0f;
-
-			child.setCurrentAngle(angle);
-			Calculate3DPosition(child, getWidth(), angle);
+		if (deltaAngle != 0.0f) {
+			mRing.rotate(deltaAngle);
+			if (mVirtualized) {
+				rebindSlots();
+				scheduleImagePreparation();
+			}
 
+			// See setUpChild, items moved
+			for (int i = 0;i < getChildCount();i++) {
+				final CarouselItem child = (CarouselItem) getChildAt(i);
+				child.updateImageAlpha();
+				child.invalidate();
+			}
 		}
 
 		// Clear unused views
@@ -1445,7 +1793,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 		View oldSelectedChild = mSelectedChild;
 
-		View child = mSelectedChild = getChildAt(mSelectedPosition - mFirstPosition);
+		View child = mSelectedChild = getChildForPosition(mSelectedPosition);
 		if (child == null) {
 			return;
 		}
@@ -1459,7 +1807,7 @@ public class Carousel extends CarouselSpinner implements GestureDetector.OnGestu
 
 		// We unfocus the old child down here so the above hasFocus check
 		// returns true
-		if (oldSelectedChild != null) {
+		if (oldSelectedChild != null && oldSelectedChild != child) {
 
 			// Make sure its drawable state doesn't contain 'selected'
 			oldSelectedChild.setSelected(false);
@@ -3,7 +3,6 @@ package com.jason.treadmills.ui.viewcarousel;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.FrameLayout;
@@ -17,14 +16,20 @@ public class CarouselItem extends FrameLayout
 	private ImageView mImage;
 
 	private int index;
-	private float currentAngle;
-	private float itemX;
-	private float itemY;
-	private float itemZ;
-	private boolean drawn;
 
-	// It's needed to find screen coordinates
-	private Matrix mCIMatrix;
+	// Geometry of the item is read from its slot of the ring
+	private CarouselRing ring;
+	private int slot;
+
+	// It's needed to find screen coordinates, updated in place on each draw
+	private final Matrix mCIMatrix = new Matrix();
+
+	// Bitmap shown by the item which was bound by carousel adapter, adapter
+	// takes it back when it binds the item again
+	private Bitmap mBoundBitmap;
+
+	// Alpha last set on the image
+	private int mImageAlpha = 255;
 
 	public CarouselItem(Context context) {
 
@@ -54,53 +59,56 @@ public class CarouselItem extends FrameLayout
 	}
 
 
-	public void setCurrentAngle(float currentAngle) {
-
-		if(index == 0 && currentAngle > 5){
-			Log.d("", "");
-		}
+	/**
+	 * Attach item to slot of ring, which holds its angle and coordinates
+	 */
+	void setRingSlot(CarouselRing ring, int slot) {
+		this.ring = ring;
+		this.slot = slot;
+	}
 
-		this.currentAngle = currentAngle;
+	public int getSlot() {
+		return slot;
 	}
 
 	public float getCurrentAngle() {
-		return currentAngle;
+		return ring != null ? ring.getAngle(slot) : 0;
 	}
 
 	public int compareTo(CarouselItem another) {
-		return (int)(another.itemZ - this.itemZ);
-	}
-
-	public void setItemX(float x) {
-		this.itemX = x;
+		return (int)(another.getItemZ() - this.getItemZ());
 	}
 
 	public float getItemX() {
-		return itemX;
-	}
-
-	public void setItemY(float y) {
-		this.itemY = y;
+		return ring != null ? ring.getX(slot) : 0;
 	}
 
 	public float getItemY() {
-		return itemY;
-	}
-
-	public void setItemZ(float z) {
-		this.itemZ = z;
+		return ring != null ? ring.getY(slot) : 0;
 	}
 
 	public float getItemZ() {
-		return itemZ;
+		return ring != null ? ring.getZ(slot) : 0;
 	}
 
-	public void setDrawn(boolean drawn) {
-		this.drawn = drawn;
+	/**
+	 * @return Alpha the image of item is drawn with, 0-1
+	 */
+	public float getItemAlpha() {
+		return ring != null ? ring.getAlpha(slot) : 1;
 	}
 
-	public boolean isDrawn() {
-		return drawn;
+	/**
+	 * Applies alpha of the item to its image. Called by carousel when the
+	 * item moves, image is set only when alpha changed, because it invalidates
+	 */
+	@SuppressWarnings("deprecation")
+	void updateImageAlpha() {
+		final int alpha = (int) (getItemAlpha() * 255);
+		if (alpha == mImageAlpha) return;
+
+		mImageAlpha = alpha;
+		mImage.setAlpha(alpha);
 	}
 
 	public void setImageBitmap(Bitmap bitmap){
@@ -108,6 +116,14 @@ public class CarouselItem extends FrameLayout
 
 	}
 
+	Bitmap getBoundBitmap() {
+		return mBoundBitmap;
+	}
+
+	void setBoundBitmap(Bitmap bitmap) {
+		this.mBoundBitmap = bitmap;
+	}
+
 	public ImageView getImageView() {
 		return this.mImage;
 	}
@@ -117,7 +133,7 @@ public class CarouselItem extends FrameLayout
 	}
 
 	void setCIMatrix(Matrix mMatrix) {
-		this.mCIMatrix = mMatrix;
+		this.mCIMatrix.set(mMatrix);
 	}
 
 }
@@ -0,0 +1,226 @@
+package com.jason.treadmills.ui.viewcarousel;
+
+/**
+ * Geometry of items on the carousel ring, kept in primitive arrays indexed by
+ * ring slot. Slots are spaced by 360/count degrees and the ring is turned by
+ * single rotation offset, so angle of slot i is i * spacing + rotation, 0 is
+ * in front. Position and alpha of each slot are derived from its angle.
+ * Rotation updates all slots in one loop, views only read the results. Pure
+ * java, so it can be benchmarked on plain JVM.
+ * <p>
+ * Rotation is also kept without wrapping, which numbers items along the ring
+ * beyond one turn. Virtualized carousel shows item p in slot p mod count,
+ * so each slot takes next item when it passes the back of the ring.
+ */
+public class CarouselRing {
+
+	private static final float DEGREES_TO_RADIANS = (float) (Math.PI / 180.0);
+
+	private int mCount;
+	private float mSpacing;
+
+	/**
+	 * Angle of slot 0 in degrees, in range [0, 360)
+	 */
+	private float mRotation;
+
+	/**
+	 * Angle of slot 0 not wrapped to one turn, it counts turns of the ring
+	 */
+	private double mTotalRotation;
+
+	private float[] mAngle = new float[0];
+	private float[] mX = new float[0];
+	private float[] mY = new float[0];
+	private float[] mZ = new float[0];
+	private float[] mAlpha = new float[0];
+
+	/**
+	 * Half of width of each item, item is centered on its x coordinate
+	 */
+	private float[] mHalfWidth = new float[0];
+
+	private float mRadius;
+	private float mHalfHeight;
+	private float mSinTheta;
+
+	/**
+	 * Set number of slots, arrays only grow so rings of changing size don't
+	 * allocate after reaching their largest size
+	 */
+	public void setCount(int count) {
+		if (count < 0) throw new IllegalArgumentException("count < 0");
+		if (mAngle.length < count) {
+			mAngle = grow(mAngle, count);
+			mX = grow(mX, count);
+			mY = grow(mY, count);
+			mZ = grow(mZ, count);
+			mAlpha = grow(mAlpha, count);
+			mHalfWidth = grow(mHalfWidth, count);
+		}
+		mCount = count;
+		mSpacing = count > 0 ? 360.0f / count : 0;
+	}
+
+	private static float[] grow(float[] array, int count) {
+		final float[] grown = new float[count];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @param diameter
+	 *            Diameter of the ring, width of carousel
+	 * @param height
+	 *            Height of carousel
+	 * @param theta
+	 *            Tilt of the ring axis in radians
+	 */
+	public void setGeometry(float diameter, float height, float theta) {
+		mRadius = diameter / 2;
+		mHalfHeight = height / 2;
+		mSinTheta = (float) Math.sin(theta);
+	}
+
+	/**
+	 * Set width of item in slot, it is centered on the ring by it
+	 */
+	public void setItemWidth(int slot, float width) {
+		mHalfWidth[slot] = width / 2;
+		computePosition(slot);
+	}
+
+	/**
+	 * Turn ring so slot 0 is at rotation degrees and compute positions of all
+	 * slots
+	 */
+	public void setRotation(float rotation) {
+		mTotalRotation = rotation;
+		computeAngles();
+	}
+
+	/**
+	 * Turn ring so item is in front, items are numbered along the ring and
+	 * item i is in slot i mod count
+	 */
+	public void setFrontItem(int item) {
+		mTotalRotation = -(double) item * mSpacing;
+		computeAngles();
+	}
+
+	/**
+	 * Rotate all slots by delta degrees
+	 */
+	public void rotate(float delta) {
+		mTotalRotation += delta;
+		computeAngles();
+	}
+
+	private void computeAngles() {
+		mRotation = normalize((float) (mTotalRotation % 360.0));
+		final float[] angles = mAngle;
+		for (int i = 0; i < mCount; i++) {
+			angles[i] = normalize(i * mSpacing + mRotation);
+			computePosition(i);
+		}
+	}
+
+	/**
+	 * @return Angle of slot 0 in degrees, in range [0, 360)
+	 */
+	public float getRotation() {
+		return mRotation;
+	}
+
+	/**
+	 * @return Rotation which shows slot in front
+	 */
+	public float getRotationOfSlot(int slot) {
+		return normalize(-slot * mSpacing);
+	}
+
+	/**
+	 * @return Slot nearest to the front, -1 for empty ring
+	 */
+	public int getNearestSlot() {
+		if (mCount == 0) return -1;
+		// Slot i is in front when i * spacing == -rotation
+		final int slot = Math.round(normalize(-mRotation) / mSpacing);
+		return slot == mCount ? 0 : slot;
+	}
+
+	/**
+	 * @return Item shown in slot, the one of items i with i mod count == slot
+	 *         which is nearest to the front. It changes by count when slot
+	 *         passes the back of the ring.
+	 */
+	public int getItemOfSlot(int slot) {
+		if (mCount == 0) return slot;
+		// Item in front, item 0 is there at rotation 0
+		final double front = -mTotalRotation / mSpacing;
+		return slot + mCount * (int) Math.floor((front - slot) / mCount + 0.5);
+	}
+
+	/**
+	 * @return Shortest rotation which brings slot to the front, in range
+	 *         [-180, 180]
+	 */
+	public float getDistanceToFront(int slot) {
+		final float angle = mAngle[slot];
+		return angle > 180.0f ? 360.0f - angle : -angle;
+	}
+
+	/**
+	 * @return angle in range [0, 360)
+	 */
+	static float normalize(float angle) {
+		angle %= 360.0f;
+		if (angle < 0.0f) angle += 360.0f;
+		// Tiny negative angle rounds up to 360
+		return angle < 360.0f ? angle : 0.0f;
+	}
+
+	private void computePosition(int i) {
+		final float angle = mAngle[i];
+		final float radians = angle * DEGREES_TO_RADIANS;
+		final float z = mRadius * (1.0f - (float) Math.cos(radians));
+
+		mX[i] = -mRadius * (float) Math.sin(radians) + mRadius - mHalfWidth[i];
+		mZ[i] = z;
+		mY[i] = -mHalfHeight + z * mSinTheta;
+
+		// Items fade out towards the back of the ring
+		final float fromFront = angle > 180.0f ? 360.0f - angle : angle;
+		mAlpha[i] = (255.0f - fromFront) / 255.0f;
+	}
+
+	/**
+	 * @return Angle of slot in degrees, 0 is in front
+	 */
+	public float getAngle(int slot) {
+		return mAngle[slot];
+	}
+
+	public float getX(int slot) {
+		return mX[slot];
+	}
+
+	public float getY(int slot) {
+		return mY[slot];
+	}
+
+	public float getZ(int slot) {
+		return mZ[slot];
+	}
+
+	/**
+	 * @return Alpha of slot, 0-1
+	 */
+	public float getAlpha(int slot) {
+		return mAlpha[slot];
+	}
+}
@@ -287,7 +287,7 @@ public abstract class CarouselSpinner extends CarouselAdapter<SpinnerAdapter> {
 
 	public boolean judgePosition(int x, int y) {
 
-		for (int i = 0;i < mAdapter.getCount();i++) {
+		for (int i = 0;i < getChildCount();i++) {
 
 			CarouselItem item = (CarouselItem) getChildAt(i);
 
@@ -334,7 +334,7 @@ public abstract class CarouselSpinner extends CarouselAdapter<SpinnerAdapter> {
 
 		ArrayList<CarouselItem> fitting = new ArrayList<CarouselItem>();
 
-		for (int i = 0;i < mAdapter.getCount();i++) {
+		for (int i = 0;i < getChildCount();i++) {
 
 			CarouselItem item = (CarouselItem) getChildAt(i);
 
@@ -141,19 +141,30 @@ public class Rotator {
 	 * location.
 	 */
 	public boolean computeAngleOffset() {
+		return computeAngleOffset(AnimationUtils.currentAnimationTimeMillis());
+	}
+
+	/**
+	 * Same as {@link #computeAngleOffset()}, for explicit time, for example
+	 * time of frame.
+	 * 
+	 * @param currentTimeMillis
+	 *            Time in {@link AnimationUtils#currentAnimationTimeMillis()}
+	 *            time base.
+	 */
+	public boolean computeAngleOffset(long currentTimeMillis) {
 		if (mFinished) {
 			return false;
 		}
 
-		long systemClock = AnimationUtils.currentAnimationTimeMillis();
-		long timePassed = systemClock - mStartTime;
+		long timePassed = currentTimeMillis - mStartTime;
 
 		if (timePassed < mDuration) {
 			switch (mMode) {
 			case SCROLL_MODE:
 
 				float sc = (float) timePassed / mDuration;
-				mCurrAngle = mStartAngle + Math.round(mDeltaAngle * sc);
+				mCurrAngle = mStartAngle + mDeltaAngle * sc;
 				//mCurrAngle = mCurrAngle == 0.0f ? (mStartAngle +mDeltaAngle * sc) : mCurrAngle;
 				// System.out.println("The mCurrAngle is:"+mCurrAngle);
 				break;
@@ -177,6 +188,8 @@ public class Rotator {
 			}
 			return true;
 		} else {
+			// Rotation by distance ends exactly at its final angle
+			if (mMode == SCROLL_MODE) mCurrAngle = mStartAngle + mDeltaAngle;
 			mFinished = true;
 			return false;
 		}
@@ -201,10 +214,23 @@ public class Rotator {
 	 *            Duration of the scroll in milliseconds.
 	 */
 	public void startRotate(float startAngle, float dAngle, int duration) {
+		startRotate(startAngle, dAngle, duration, AnimationUtils.currentAnimationTimeMillis());
+	}
+
+	/**
+	 * Same as {@link #startRotate(float, float, int)}, rotation starts at
+	 * given time.
+	 * 
+	 * @param startTimeMillis
+	 *            Start time in
+	 *            {@link AnimationUtils#currentAnimationTimeMillis()} time
+	 *            base.
+	 */
+	public void startRotate(float startAngle, float dAngle, int duration, long startTimeMillis) {
 		mMode = SCROLL_MODE;
 		mFinished = false;
 		mDuration = duration;
-		mStartTime = AnimationUtils.currentAnimationTimeMillis();
+		mStartTime = startTimeMillis;
 		mStartAngle = startAngle;
 		mDeltaAngle = dAngle;
 	}
@@ -240,6 +266,18 @@ public class Rotator {
 	 *            second.
 	 */
 	public void fling(float velocityAngle) {
+		fling(velocityAngle, AnimationUtils.currentAnimationTimeMillis());
+	}
+
+	/**
+	 * Same as {@link #fling(float)}, fling starts at given time.
+	 * 
+	 * @param startTimeMillis
+	 *            Start time in
+	 *            {@link AnimationUtils#currentAnimationTimeMillis()} time
+	 *            base.
+	 */
+	public void fling(float velocityAngle, long startTimeMillis) {
 
 		mMode = FLING_MODE;
 		mFinished = false;
@@ -250,7 +288,7 @@ public class Rotator {
 		mDuration = (int) (1000.0f * Math.sqrt(2.0f * mCoeffVelocity * Math.abs(velocity)
                 / mDeceleration));
 
-		mStartTime = AnimationUtils.currentAnimationTimeMillis();
+		mStartTime = startTimeMillis;
 
 	}
 
@@ -0,0 +1,162 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+/**
+ * Pure java geometry of {@link FeatureCoverFlow} covers. Computes final 3x3 transformation matrix of cover in closed form,
+ * without android.graphics.Camera and without trigonometric functions, so it can be tested and benchmarked on plain JVM.
+ *
+ * Transformation of cover is composed from scale by distance from center, translation on Z axis following circle path
+ * and adjustment of horizontal position. Translation on Z axis of plane parallel to screen projected by camera
+ * placed at distance {@link #CAMERA_DISTANCE} is uniform scale D/(D+z) around cover center.
+ *
+ * Matrix values are in order used by android.graphics.Matrix#setValues
+ */
+public class CoverFlowGeometry {
+	/**
+	 * Distance of camera from screen in pixels. android.graphics.Camera is placed at -8 inches, with 72 pixels per inch.
+	 */
+	public static final float CAMERA_DISTANCE = 8 * 72;
+
+	public static final int MSCALE_X = 0;
+	public static final int MSKEW_X = 1;
+	public static final int MTRANS_X = 2;
+	public static final int MSKEW_Y = 3;
+	public static final int MSCALE_Y = 4;
+	public static final int MTRANS_Y = 5;
+	public static final int MPERSP_0 = 6;
+	public static final int MPERSP_1 = 7;
+	public static final int MPERSP_2 = 8;
+
+	private float mSpacing = 0.3f;
+	private float mScalingThreshold = 0.3f;
+	private float mAdjustPositionThreshold = 0.1f;
+	private float mAdjustPositionMultiplier = 1.0f;
+	private float mMaxScaleFactor = 1.3f;
+	private float mRadius = 1.5f;
+	private float mRadiusInMatrixSpace = 1000f;
+	private int mTuningWidgetSize = 1280;
+	private int mCoverWidth = 160;
+
+	private int mWidth;
+	private int mScrollX;
+
+	/**
+	 * Sets all tuning attributes at once. Meaning of parameters is documented on fields of {@link FeatureCoverFlow}
+	 */
+	public void setParams(float spacing, float scalingThreshold, float adjustPositionThreshold, float adjustPositionMultiplier,
+			float maxScaleFactor, float radius, float radiusInMatrixSpace, int tuningWidgetSize, int coverWidth){
+		mSpacing = spacing;
+		mScalingThreshold = scalingThreshold;
+		mAdjustPositionThreshold = adjustPositionThreshold;
+		mAdjustPositionMultiplier = adjustPositionMultiplier;
+		mMaxScaleFactor = maxScaleFactor;
+		mRadius = radius;
+		mRadiusInMatrixSpace = radiusInMatrixSpace;
+		mTuningWidgetSize = tuningWidgetSize;
+		mCoverWidth = coverWidth;
+	}
+
+	/**
+	 * @param width widget width in pixels
+	 * @param scrollX current horizontal scroll of widget
+	 */
+	public void setViewport(int width, int scrollX){
+		mWidth = width;
+		mScrollX = scrollX;
+	}
+
+	private float getWidgetSizeMultiplier(){
+		return ((float)mTuningWidgetSize)/((float)mWidth);
+	}
+
+	/**
+	 * Calculates relative position on screen in range -1 to 1, widgets out of screen can have values over 1 or -1
+	 * @param pixelPos Absolute position in pixels including scroll offset
+	 * @return relative position
+	 */
+	public float getRelativePosition(int pixelPos){
+		final int half = mWidth/2;
+		final int centerPos = mScrollX + half;
+
+		return (pixelPos - centerPos)/((float) half);
+	}
+
+	/**
+	 * Clamps relative position by threshold, and produces values in range -1 to 1 directly usable for transformation computation
+	 * @param position value int range -1 to 1
+	 * @param threshold always positive value of threshold distance from center in range 0-1
+	 */
+	public static float getClampedRelativePosition(float position, float threshold){
+		if(position < 0){
+			if(position < -threshold) return -1f;
+			else return position/threshold;
+		}
+		else{
+			if(position > threshold) return 1;
+			else return position/threshold;
+		}
+	}
+
+	public float getScaleFactor(int childCenter){
+		return 1 + (mMaxScaleFactor-1) * (1 - Math.abs(getClampedRelativePosition(getRelativePosition(childCenter), mScalingThreshold * getWidgetSizeMultiplier())));
+	}
+
+	/**
+	 * Compute offset following path on circle
+	 * @return offset from position on unitary circle, 1 - sqrt(1 - x^2) which equals 1 - sin(acos(x))
+	 */
+	public float getOffsetOnCircle(int childCenter){
+		float x = getRelativePosition(childCenter)/mRadius;
+		if(x < -1.0f) x = -1.0f;
+		if(x > 1.0f) x = 1.0f;
+
+		return (float) (1 - Math.sqrt(1 - x*x));
+	}
+
+	/**
+	 * @return sqrt(1 - x^2) which equals sin(acos(x)). Not clamped, covers further than radius get NaN
+	 */
+	public float getSpacingMultiplierOnCircle(int childCenter) {
+		final float x = getRelativePosition(childCenter) / mRadius;
+		return (float) Math.sqrt(1 - x*x);
+	}
+
+	/**
+	 * @param z translation on Z axis in matrix space
+	 * @return scale of plane parallel to screen translated by z, as projected by camera
+	 */
+	public static float getProjectionScale(float z){
+		return CAMERA_DISTANCE / (CAMERA_DISTANCE + z);
+	}
+
+	public float getAdjustPosition(int childCenter){
+		final float crp = getClampedRelativePosition(getRelativePosition(childCenter), mAdjustPositionThreshold * getWidgetSizeMultiplier());
+		return mCoverWidth * mAdjustPositionMultiplier * mSpacing * crp * getSpacingMultiplierOnCircle(childCenter);
+	}
+
+	/**
+	 * Computes transformation of cover in its own coordinate system (0,0 is its top left corner)
+	 * @param childCenter horizontal center of cover in pixels including scroll offset
+	 * @param childWidth width of cover
+	 * @param childHeight height of cover
+	 * @param out array of at least 9 values, filled in order of android.graphics.Matrix#setValues
+	 */
+	public void computeCoverMatrix(int childCenter, int childWidth, int childHeight, float[] out){
+		final float scale = getScaleFactor(childCenter);
+		final float z = mRadiusInMatrixSpace * getOffsetOnCircle(childCenter);
+		final float k = scale * getProjectionScale(z);
+		final float d = getAdjustPosition(childCenter);
+
+		final float cx = childWidth/2f;
+		final float cy = childHeight/2f;
+
+		out[MSCALE_X] = k;
+		out[MSKEW_X] = 0;
+		out[MTRANS_X] = cx + d - k * cx;
+		out[MSKEW_Y] = 0;
+		out[MSCALE_Y] = k;
+		out[MTRANS_Y] = cy - k * cy;
+		out[MPERSP_0] = 0;
+		out[MPERSP_1] = 0;
+		out[MPERSP_2] = 1;
+	}
+}
@@ -4,9 +4,12 @@ package com.jason.treadmills.ui.viewcoverflow;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.database.DataSetObserver;
+import android.graphics.Canvas;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
@@ -16,15 +19,16 @@ import android.view.ViewConfiguration;
 import android.view.ViewDebug.CapturedViewProperty;
 import android.widget.Adapter;
 import android.widget.AdapterView;
-import android.widget.Scroller;
 
 import com.jason.treadmills.R;
+import com.jason.treadmills.ui.viewcoverflow.interfaces.IItemChangeNotifier;
+import com.jason.treadmills.ui.viewcoverflow.interfaces.IItemChangeObserver;
 import com.jason.treadmills.ui.viewcoverflow.interfaces.IViewObserver;
 import com.jason.treadmills.general.ToolBox;
 import com.jason.treadmills.general.Validate;
+import com.jason.treadmills.utils.FrameScheduler;
 
-import java.lang.ref.WeakReference;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 
 /**
@@ -44,6 +48,13 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
     
     protected static final int SCROLLING_DURATION = 500;
     
+    /** When content rests scrolled further than this, scroll offset is rebased toward zero */
+    protected static final int REBASE_SCROLL_THRESHOLD = 1 << 16;
+    
+    public static final int DEFAULT_PREFETCH_COUNT = 2;
+    
+    public static final long DEFAULT_PREFETCH_BUDGET_NANOS = 4000000L;
+    
     
 	
 	/** The adapter providing data for container */
@@ -75,8 +86,8 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
     
     protected static final int TOUCH_STATE_DISTANCE_SCROLL = 5;
         
-    /** A list of cached (re-usable) item views */
-    protected final LinkedList<WeakReference<View>> mCachedItemViews = new LinkedList<WeakReference<View>>();
+    /** Item views removed from container, kept by view type for reuse as convertView */
+    protected final ScrapHeap mScrapHeap = new ScrapHeap();
     
     /** If there is not enough items to fill adapter, this value is set to true and scrolling is disabled. Since all items from adapter are on screen*/
     protected boolean isSrollingDisabled = false;
@@ -92,7 +103,15 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 
 	protected int mTouchState = TOUCH_STATE_RESTING;
     
-	protected final Scroller mScroller = new Scroller(getContext());
+	protected final ScrollAnimator mScroller = new ScrollAnimator(ScrollAnimator.computeDeceleration(getResources().getDisplayMetrics().density));
+	private FrameScheduler mFrameScheduler;
+	
+	private final FrameScheduler.FrameCallback mScrollFrameCallback = new FrameScheduler.FrameCallback() {
+		@Override
+		public boolean doFrame(long frameTimeNanos) {
+			return onScrollFrame(frameTimeNanos);
+		}
+	};
 	private VelocityTracker mVelocityTracker;
 	private boolean mDataChanged;
     
@@ -104,6 +123,72 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	private float mLastMotionX;
 	private float mLastMotionY;
 
+	/** How many items beyond edge in scroll direction are prepared after each frame */
+	private int mPrefetchCount = DEFAULT_PREFETCH_COUNT;
+	
+	/** Time which prefetching may take after one frame */
+	private long mPrefetchBudgetNanos = DEFAULT_PREFETCH_BUDGET_NANOS;
+	
+	/** 1 when content last scrolled toward higher positions, -1 toward lower */
+	private int mScrollDirection = 1;
+	private boolean mPrefetchScheduled = false;
+	private int mPrefetchedItemCount;
+	
+	/** Items around this position are prepared before items in scroll direction, INVALID_POSITION if there are none */
+	private int mPrefetchTarget = INVALID_POSITION;
+	private int mPrefetchTargetRadius;
+	/** Next item to prepare around target, offsets from target go 0, 1, -1, 2, -2 ... */
+	private int mPrefetchTargetStep;
+	
+	private final Runnable mPrefetchRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mPrefetchScheduled = false;
+			prefetch();
+		}
+	};
+	
+	/** Item changes notified since last layout, applied together in one pass */
+	private final ItemChangeSet mPendingItemChanges = new ItemChangeSet();
+	
+	/** Set by item notification, following onChanged of same notification doesn't reload everything */
+	private boolean mItemChangeNotified = false;
+	
+	/** Children kept by item change pass, by new adapter position */
+	private final SparseArray<View> mKeptChildren = new SparseArray<View>();
+	private final SparseBooleanArray mChangedKeptChildren = new SparseBooleanArray();
+	private final ArrayList<View> mDiscardedChildren = new ArrayList<View>();
+	
+	private final IItemChangeObserver fItemChangeObserver = new IItemChangeObserver() {
+		@Override
+		public void onItemRangeChanged(int positionStart, int itemCount) {
+			mPendingItemChanges.addChanged(positionStart, itemCount);
+			onItemChangeNotified();
+		}
+
+		@Override
+		public void onItemRangeInserted(int positionStart, int itemCount) {
+			mPendingItemChanges.addInserted(positionStart, itemCount);
+			onItemChangeNotified();
+		}
+
+		@Override
+		public void onItemRangeRemoved(int positionStart, int itemCount) {
+			mPendingItemChanges.addRemoved(positionStart, itemCount);
+			onItemChangeNotified();
+		}
+
+		@Override
+		public void onItemMoved(int fromPosition, int toPosition) {
+			mPendingItemChanges.addMoved(fromPosition, toPosition);
+			onItemChangeNotified();
+		}
+	};
+	
+	/** Container size for which children were measured by last full relayout */
+	private int mLayoutWidth = -1;
+	private int mLayoutHeight = -1;
+
 	private final Point mDown = new Point();
 	private boolean mHandleSelectionOnActionUp = false;
 	private boolean mInterceptTouchEvents;
@@ -143,9 +228,16 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 
 		@Override
 		public void onChanged() {
+			if(mItemChangeNotified){
+				//change was described by item notification, which is applied on next layout
+				mItemChangeNotified = false;
+				invalidate();
+				return;
+			}
 			synchronized(this){
 				mDataChanged = true;
 			}
+			onAdapterDataChanged();
 			invalidate();
 		}
 
@@ -288,15 +380,25 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	public void setAdapter(Adapter adapter) {
 		if(mAdapter != null) {
 			mAdapter.unregisterDataSetObserver(fDataObserver);
+			if(mAdapter instanceof IItemChangeNotifier){
+				((IItemChangeNotifier) mAdapter).unregisterItemChangeObserver(fItemChangeObserver);
+			}
 		}
 		mAdapter = adapter;
 		mAdapter.registerDataSetObserver(fDataObserver);
+		if(adapter instanceof IItemChangeNotifier){
+			((IItemChangeNotifier) adapter).registerItemChangeObserver(fItemChangeObserver);
+		}
+		mPendingItemChanges.clear();
+		mItemChangeNotified = false;
 		
 		if(adapter instanceof IViewObserver){
 			setViewObserver((IViewObserver) adapter);
 		}
 		
 		reset();
+		//views of previous adapter are dropped
+		mScrapHeap.setViewTypeCount(adapter.getViewTypeCount());
 		refill();
 		invalidate();
 	}
@@ -366,33 +468,18 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	    	return;
 	    }
 	    
-		if (mScroller.computeScrollOffset()) {
-			if(mScroller.getFinalX() == mScroller.getCurrX()){
-				mScroller.abortAnimation();
-				mTouchState = TOUCH_STATE_RESTING;
-				if(!checkScrollPosition())
-					clearChildrenCache();
-				return;
-			}
-
-		    int x = mScroller.getCurrX();
-		    scrollTo(x, 0);
-		    
-            postInvalidate();
-        }
-		else if(mTouchState == TOUCH_STATE_FLING || mTouchState == TOUCH_STATE_DISTANCE_SCROLL){
-			mTouchState = TOUCH_STATE_RESTING;
-			if(!checkScrollPosition())
-				clearChildrenCache();
-		}
-		
 		if(mDataChanged){
+			mPendingItemChanges.clear();
 			removeAllViewsInLayout();
 			refillOnChange(mFirstItemPosition);
 			return;
 		}
 		
-		relayout();
+		if(!mPendingItemChanges.isEmpty()){
+			applyItemChanges();
+		}
+		
+		layoutOnScroll();
 
 	}
 
@@ -408,11 +495,21 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	public void fling(int velocityX, int velocityY){
 		mTouchState = TOUCH_STATE_FLING;
 		final int x = getScrollX();
-		final int y = getScrollY();
 		
-		mScroller.fling(x, y, velocityX, velocityY, Integer.MIN_VALUE,Integer.MAX_VALUE, Integer.MIN_VALUE,Integer.MAX_VALUE);
+		mScroller.fling(x, velocityX, getFrameScheduler().now());
+		final int finalX = snapFlingTarget(mScroller.getFinalX());
+		if(finalX != mScroller.getFinalX()) mScroller.setFinalX(finalX);
+		startScrollFrames();
+	}
 	
-		invalidate();
+	/**
+	 * Called when fling starts, subclass can move place where fling stops, for example to align item there.
+	 * Like Scroller.setFinalX fling keeps its duration and its curve is stretched to stop at returned scroll offset
+	 * @param finalX scroll offset where fling would stop
+	 * @return scroll offset where fling should stop
+	 */
+	protected int snapFlingTarget(int finalX){
+		return finalX;
 	}
 	
 	/**
@@ -420,10 +517,61 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	 * @param dx
 	 */
 	public void scroll(int dx){
-		mScroller.startScroll(getScrollX(), 0, dx, 0, SCROLLING_DURATION);
+		mScroller.startScroll(getScrollX(), dx, SCROLLING_DURATION, getFrameScheduler().now());
 		mTouchState = TOUCH_STATE_DISTANCE_SCROLL;
+		startScrollFrames();
+	}
+	
+	private void startScrollFrames(){
+		if(mScroller.isFinished()) onScrollFinished();
+		else getFrameScheduler().postFrameCallback(mScrollFrameCallback);
 		invalidate();
 	}
+	
+	/**
+	 * Advances fling or programmatic scroll to frame time, called once per frame while scroller runs
+	 * @return true if scroller still runs
+	 */
+	private boolean onScrollFrame(long frameTimeNanos){
+		if(!mScroller.computeScrollOffset(frameTimeNanos)) return false;
+		if(mAdapter == null || mAdapter.getCount() == 0){
+			mScroller.forceFinished(true);
+			return false;
+		}
+		
+		scrollTo(mScroller.getCurrX(), 0);
+		if(mScroller.isFinished()){
+			onScrollFinished();
+			return false;
+		}
+		return true;
+	}
+	
+	private void onScrollFinished(){
+		if(mTouchState != TOUCH_STATE_FLING && mTouchState != TOUCH_STATE_DISTANCE_SCROLL) return;
+		
+		mTouchState = TOUCH_STATE_RESTING;
+		if(!checkScrollPosition())
+			clearChildrenCache();
+	}
+	
+	/**
+	 * @return scheduler which runs scroll animations, shared scheduler of main thread by default
+	 */
+	protected FrameScheduler getFrameScheduler(){
+		if(mFrameScheduler == null) mFrameScheduler = FrameScheduler.getDefault();
+		return mFrameScheduler;
+	}
+	
+	/**
+	 * Use other scheduler for scroll animations, for example one driven by fake clock in tests
+	 */
+	public void setFrameScheduler(FrameScheduler frameScheduler){
+		Validate.notNull(frameScheduler, "Frame scheduler must not be null");
+		mScroller.forceFinished(true);
+		getFrameScheduler().removeFrameCallback(mScrollFrameCallback);
+		mFrameScheduler = frameScheduler;
+	}
 
 	@Override
 	protected void onLayout(boolean changed, int left, int top, int right,
@@ -461,6 +609,7 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 		}
 		else{
 			relayout();
+			layoutOnScroll();
 		}
 	}
 	
@@ -478,7 +627,16 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 		measureChild(child, pwms, phms);
 	}
 	
+	/**
+	 * Layouts all children again. Children are measured only when container size changed, unless their size is fixed,
+	 * or when they requested layout
+	 */
 	private void relayout(){
+		final boolean sizeChanged = getWidth() != mLayoutWidth || getHeight() != mLayoutHeight;
+		mLayoutWidth = getWidth();
+		mLayoutHeight = getHeight();
+		final boolean measureAll = sizeChanged && !hasFixedChildSize();
+		
 		final int c = getChildCount();
 		int left = mLeftChildEdge;
 
@@ -487,13 +645,328 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 		for(int i = 0; i < c; i++){
 			child = getChildAt(i);
 			lp = (LoopLayoutParams) child.getLayoutParams(); 
-			measureChild(child);
+			if(measureAll || child.isLayoutRequested()) measureChild(child);
 			
 			left = layoutChildHorizontal(child, left, lp);
 		}
 		
 	}
 	
+	/**
+	 * @return true if measured size of children doesn't depend on container size, so they need not be measured when it changes
+	 */
+	protected boolean hasFixedChildSize(){
+		return false;
+	}
+	
+	/**
+	 * @return how far beyond left and right edge of visible area children are kept
+	 */
+	protected int getLayoutEdgeExtent(){
+		return 0;
+	}
+	
+	/**
+	 * Layout after scroll. Only children which left visible area are removed and new ones are added on edges,
+	 * remaining children keep their layout
+	 */
+	protected void layoutOnScroll(){
+		if(getChildCount() == 0) return;
+		
+		final int extent = getLayoutEdgeExtent();
+		final int leftEdge = getScrollX() - extent;
+		final int rightEdge = getScrollX() + getWidth() + extent;
+		
+		removeNonVisibleChildren(leftEdge, rightEdge);
+		if(getChildCount() == 1){
+			final View child = getChildAt(0);
+			if(child.getRight() <= leftEdge || child.getLeft() >= rightEdge) skipToVisibleArea(leftEdge);
+		}
+		fillRight(rightEdge);
+		fillLeft(leftEdge);
+		
+		if(mTouchState == TOUCH_STATE_RESTING && mScroller.isFinished() && Math.abs(getScrollX()) > REBASE_SCROLL_THRESHOLD){
+			rebaseScroll();
+		}
+	}
+	
+	/**
+	 * Content scrolled far beyond only remaining child. Positions in between are skipped without creating their views,
+	 * their widths are assumed same as width of remaining child
+	 */
+	private void skipToVisibleArea(int leftEdge){
+		if(isSrollingDisabled) return;
+		
+		final View child = getChildAt(0);
+		final LoopLayoutParams lp = (LoopLayoutParams) child.getLayoutParams();
+		final int pitch = lp.leftMargin + child.getMeasuredWidth() + lp.rightMargin;
+		if(pitch <= 0) return;
+		
+		//index of item covering left edge, relative to remaining child
+		final int d = leftEdge - mLeftChildEdge;
+		final int steps = d >= 0 ? d / pitch : -((-d + pitch - 1) / pitch);
+		final int count = mAdapter.getCount();
+		final int position = (int) (((mFirstItemPosition + (long) steps) % count + count) % count);
+		reanchor(position, mLeftChildEdge + steps * pitch);
+	}
+	
+	/**
+	 * Replaces all children by item on position laid out with left edge on given coordinate,
+	 * remaining visible area is filled from it. Removed children are recycled
+	 */
+	protected void reanchor(int position, int leftChildEdge){
+		final int count = mAdapter.getCount();
+		for(int i = getChildCount() - 1; i >= 0; i--){
+			final View child = getChildAt(i);
+			removeViewInLayout(child);
+			recycleChild(child, (mFirstItemPosition + i) % count);
+		}
+		
+		mFirstItemPosition = position;
+		mLastItemPosition = position;
+		mLeftChildEdge = leftChildEdge;
+		final View child = obtainChild(position, LAYOUT_MODE_AFTER);
+		final LoopLayoutParams lp = (LoopLayoutParams) child.getLayoutParams();
+		layoutChildHorizontal(child, leftChildEdge, lp);
+		if(position == mSelectedPosition) child.setSelected(true);
+		
+		final int extent = getLayoutEdgeExtent();
+		fillRight(getScrollX() + getWidth() + extent);
+		fillLeft(getScrollX() - extent);
+	}
+	
+	/**
+	 * Moves content and scroll offset by same distance, so scroll offset stays small and float precision of
+	 * transformations doesn't degrade. Nothing moves on screen
+	 */
+	private void rebaseScroll(){
+		final int dx = getScrollX();
+		for(int i = 0; i < getChildCount(); i++){
+			getChildAt(i).offsetLeftAndRight(-dx);
+		}
+		mLeftChildEdge -= dx;
+		
+		final int direction = mScrollDirection;
+		scrollTo(0, getScrollY());
+		mScrollDirection = direction;
+	}
+	
+	private void removeNonVisibleChildren(int leftEdge, int rightEdge){
+		View child = getChildAt(0);
+		while(getChildCount() > 1 && child.getRight() <= leftEdge){
+			mLeftChildEdge = child.getRight() + ((LoopLayoutParams) child.getLayoutParams()).rightMargin;
+			removeViewInLayout(child);
+			recycleChild(child, mFirstItemPosition);
+			mFirstItemPosition = nextPosition(mFirstItemPosition);
+			child = getChildAt(0);
+		}
+		
+		child = getChildAt(getChildCount() - 1);
+		while(getChildCount() > 1 && child.getLeft() >= rightEdge){
+			removeViewInLayout(child);
+			recycleChild(child, mLastItemPosition);
+			mLastItemPosition = previousPosition(mLastItemPosition);
+			child = getChildAt(getChildCount() - 1);
+		}
+	}
+	
+	private void fillRight(int rightEdge){
+		final View last = getChildAt(getChildCount() - 1);
+		int right = last.getRight() + ((LoopLayoutParams) last.getLayoutParams()).rightMargin;
+		
+		while(right < rightEdge){
+			final int position = nextPosition(mLastItemPosition);
+			if(position == INVALID_POSITION) return;
+			
+			final View child = obtainChild(position, LAYOUT_MODE_AFTER);
+			right = layoutChildHorizontal(child, right, (LoopLayoutParams) child.getLayoutParams());
+			mLastItemPosition = position;
+			if(position == mSelectedPosition) child.setSelected(true);
+		}
+	}
+	
+	private void fillLeft(int leftEdge){
+		while(mLeftChildEdge > leftEdge){
+			final int position = previousPosition(mFirstItemPosition);
+			if(position == INVALID_POSITION) return;
+			
+			final View child = obtainChild(position, LAYOUT_MODE_TO_BEFORE);
+			final LoopLayoutParams lp = (LoopLayoutParams) child.getLayoutParams();
+			mLeftChildEdge -= lp.leftMargin + child.getMeasuredWidth() + lp.rightMargin;
+			layoutChildHorizontal(child, mLeftChildEdge, lp);
+			mFirstItemPosition = position;
+			if(position == mSelectedPosition) child.setSelected(true);
+		}
+	}
+	
+	@Override
+	protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+		super.onScrollChanged(l, t, oldl, oldt);
+		if(l != oldl) mScrollDirection = l > oldl ? 1 : -1;
+	}
+	
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		super.dispatchDraw(canvas);
+		schedulePrefetch();
+	}
+	
+	@Override
+	protected void onDetachedFromWindow() {
+		getFrameScheduler().removeFrameCallback(mScrollFrameCallback);
+		if(!mScroller.isFinished()){
+			mScroller.forceFinished(true);
+			mTouchState = TOUCH_STATE_RESTING;
+		}
+		removeCallbacks(mPrefetchRunnable);
+		mPrefetchScheduled = false;
+		super.onDetachedFromWindow();
+	}
+	
+	/**
+	 * Prefetch runs after drawn frame is handed over, in idle time before next frame
+	 */
+	private void schedulePrefetch(){
+		if(mPrefetchScheduled || mPrefetchCount == 0) return;
+		
+		mPrefetchScheduled = true;
+		post(mPrefetchRunnable);
+	}
+	
+	/**
+	 * Prepares items following edge of container in scroll direction until time budget runs out.
+	 * At least one item is prepared in each run, unfinished work continues in next run
+	 */
+	private void prefetch(){
+		if(mAdapter == null || mAdapter.getCount() == 0 || getChildCount() == 0) return;
+		
+		final long deadline = System.nanoTime() + mPrefetchBudgetNanos;
+		if(mPrefetchTarget != INVALID_POSITION && !prefetchTarget(deadline)) return;
+		
+		int position = mScrollDirection > 0 ? mLastItemPosition : mFirstItemPosition;
+		for(int i = 0; i < mPrefetchCount; i++){
+			position = mScrollDirection > 0 ? nextPosition(position) : previousPosition(position);
+			//few items, position wrapped back on screen
+			if(position == INVALID_POSITION || isPositionOnScreen(position)) return;
+			
+			if(prefetchItem(position)){
+				mPrefetchedItemCount++;
+				if(System.nanoTime() > deadline){
+					schedulePrefetch();
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Prepares items around prefetch target, nearest first
+	 * @return true if all of them are prepared, false if time budget ran out
+	 */
+	private boolean prefetchTarget(long deadline){
+		final int count = mAdapter.getCount();
+		final int steps = Math.min(2 * mPrefetchTargetRadius + 1, count);
+		while(mPrefetchTargetStep < steps){
+			final int step = mPrefetchTargetStep++;
+			final int offset = (step + 1) / 2 * (step % 2 == 0 ? -1 : 1);
+			final int position = ((mPrefetchTarget + offset) % count + count) % count;
+			if(isPositionOnScreen(position)) continue;
+			
+			if(prefetchItem(position)){
+				mPrefetchedItemCount++;
+				if(System.nanoTime() > deadline){
+					schedulePrefetch();
+					return false;
+				}
+			}
+		}
+		mPrefetchTarget = INVALID_POSITION;
+		return true;
+	}
+	
+	/**
+	 * Prepare items around position with priority over items in scroll direction, for example items
+	 * which will be visible when running fling stops
+	 * @param radius how many items on each side of position are prepared
+	 */
+	protected void prefetchAround(int position, int radius){
+		mPrefetchTarget = position;
+		mPrefetchTargetRadius = radius;
+		mPrefetchTargetStep = 0;
+		schedulePrefetch();
+	}
+	
+	private boolean isPositionOnScreen(int position){
+		final int count = mAdapter.getCount();
+		return (position - mFirstItemPosition + count) % count < getChildCount();
+	}
+	
+	/**
+	 * Prepare item at position so it is cheap to add when it scrolls in, for example create, bind and draw its view into cache
+	 * @return true if any work was done, false if item was already prepared or container can't prepare items
+	 */
+	protected boolean prefetchItem(int position){
+		return false;
+	}
+	
+	/**
+	 * @param count how many items beyond edge in scroll direction are prepared ahead, 0 disables prefetching
+	 */
+	public void setPrefetchCount(int count){
+		if(count < 0) throw new IllegalArgumentException("Prefetch count must not be negative");
+		mPrefetchCount = count;
+	}
+	
+	public int getPrefetchCount(){
+		return mPrefetchCount;
+	}
+	
+	/**
+	 * @param budgetNanos time which prefetching may take after one frame
+	 */
+	public void setPrefetchBudgetNanos(long budgetNanos){
+		if(budgetNanos <= 0) throw new IllegalArgumentException("Prefetch budget must be positive");
+		mPrefetchBudgetNanos = budgetNanos;
+	}
+	
+	/**
+	 * @return number of items prepared by prefetching
+	 */
+	public int getPrefetchedItemCount(){
+		return mPrefetchedItemCount;
+	}
+	
+	/**
+	 * @return adapter position following given one, wrapped to start when container is endless, or INVALID_POSITION
+	 */
+	protected int nextPosition(int position){
+		if(position + 1 < mAdapter.getCount()) return position + 1;
+		return isSrollingDisabled ? INVALID_POSITION : 0;
+	}
+	
+	protected int previousPosition(int position){
+		if(position > 0) return position - 1;
+		return isSrollingDisabled ? INVALID_POSITION : mAdapter.getCount() - 1;
+	}
+	
+	/**
+	 * Gets item view for position and adds it to container on side given by layout mode
+	 * @return child which was actually added to container
+	 */
+	protected View obtainChild(int position, int layoutMode){
+		final View child = mAdapter.getView(position, getCachedView(position), this);
+		Validate.notNull(child, "Your adapter has returned null from getView.");
+		return addAndMeasureChildHorizontal(child, layoutMode);
+	}
+	
+	/**
+	 * Called for child, which was removed from container after it scrolled out of visible area
+	 * @param position adapter position of child
+	 */
+	protected void recycleChild(View child, int position){
+		mScrapHeap.put(child, mAdapter.getItemViewType(position));
+	}
+	
 	
 	protected void fillFirstTime(final int lastItemPos,final int firstItemPos){
 		final int leftScreenEdge = 0;
@@ -543,7 +1016,7 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 				return;
 			}
 
-			child = mAdapter.getView(mLastItemPosition, getCachedView(), this);
+			child = mAdapter.getView(mLastItemPosition, getCachedView(mLastItemPosition), this);
             Validate.notNull(child, "Your adapter has returned null from getView.");
             child = addAndMeasureChildHorizontal(child, LAYOUT_MODE_AFTER);
 			left = layoutChildHorizontal(child, left, (LoopLayoutParams) child.getLayoutParams());
@@ -632,6 +1105,162 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	}
 	
 
+	/**
+	 * Called when adapter notifies about data change, before container is invalidated to refill
+	 */
+	protected void onAdapterDataChanged(){
+	}
+	
+	private void onItemChangeNotified(){
+		mItemChangeNotified = true;
+		if(mPendingItemChanges.isOverflow()){
+			//too many changes to track, following onChanged reloads everything
+			mItemChangeNotified = false;
+		}
+		onItemChangesPending();
+		invalidate();
+	}
+	
+	/**
+	 * Called when adapter notifies about item changes, before container is invalidated to apply them
+	 */
+	protected void onItemChangesPending(){
+	}
+	
+	/**
+	 * Applies all item changes notified since last layout. Changed items on screen are rebound in place,
+	 * when items were inserted, removed or moved, surviving children are kept with their views
+	 * and only missing ones are created, kept children of changed items are rebound too
+	 */
+	private void applyItemChanges(){
+		final ItemChangeSet changes = mPendingItemChanges;
+		final int count = mAdapter.getCount();
+		mItemChangeNotified = false;
+		onApplyItemChanges(changes);
+		
+		if(count == 0 || isSrollingDisabled || changes.isOverflow()){
+			//layout may change from endless to fixed, reload everything
+			changes.clear();
+			removeAllViewsInLayout();
+			refillOnChange(Math.min(mFirstItemPosition, Math.max(count - 1, 0)));
+			return;
+		}
+		
+		if(mSelectedPosition != INVALID_POSITION){
+			final int selected = changes.map(mSelectedPosition);
+			mSelectedPosition = selected != ItemChangeSet.REMOVED && selected < count ? selected : INVALID_POSITION;
+		}
+		
+		final int childCount = getChildCount();
+		if(!changes.isStructural()){
+			for(int i = 0; i < childCount; i++){
+				final int position = (mFirstItemPosition + i) % count;
+				if(changes.isChanged(position)) rebindChild(i, position);
+			}
+			changes.clear();
+			relayout();
+			return;
+		}
+		
+		//new first position is position of first child which survived
+		final int oldCount = count - changes.getCountDelta();
+		int first = ItemChangeSet.REMOVED;
+		final SparseArray<View> kept = mKeptChildren;
+		final SparseBooleanArray changed = mChangedKeptChildren;
+		final ArrayList<View> discarded = mDiscardedChildren;
+		for(int i = 0; i < childCount; i++){
+			final View child = getChildAt(i);
+			final int oldPosition = oldCount > 0 ? (mFirstItemPosition + i) % oldCount : ItemChangeSet.REMOVED;
+			final int position = oldCount > 0 ? changes.map(oldPosition) : ItemChangeSet.REMOVED;
+			if(position == ItemChangeSet.REMOVED || position >= count || kept.get(position) != null){
+				discarded.add(child);
+				continue;
+			}
+			if(first == ItemChangeSet.REMOVED) first = position;
+			kept.put(position, child);
+			//item may have been changed before or after it was moved
+			if(changes.isChanged(oldPosition)) changed.put(position, true);
+		}
+		changes.clear();
+		
+		detachAllViewsFromParent();
+		for(int i = 0; i < discarded.size(); i++){
+			removeDetachedView(discarded.get(i), false);
+			discardChild(discarded.get(i));
+		}
+		discarded.clear();
+		if(first == ItemChangeSet.REMOVED) first = Math.min(mFirstItemPosition, count - 1);
+		
+		//children are laid out again from same left edge, starting with new first position
+		mFirstItemPosition = first;
+		final int rightEdge = getScrollX() + getWidth() + getLayoutEdgeExtent();
+		int position = first;
+		int left = mLeftChildEdge;
+		while(left < rightEdge && position != INVALID_POSITION){
+			View child = kept.get(position);
+			if(child != null){
+				kept.remove(position);
+				attachViewToParent(child, -1, child.getLayoutParams());
+				if(changed.get(position)){
+					rebindChild(getChildCount() - 1, position);
+					child = getChildAt(getChildCount() - 1);
+				}
+				if(child.isLayoutRequested()) measureChild(child);
+			}
+			else{
+				child = obtainChild(position, LAYOUT_MODE_AFTER);
+			}
+			left = layoutChildHorizontal(child, left, (LoopLayoutParams) child.getLayoutParams());
+			child.setSelected(position == mSelectedPosition);
+			mLastItemPosition = position;
+			
+			position = nextPosition(position);
+			if(position == first) break;
+		}
+		
+		for(int i = 0; i < kept.size(); i++){
+			final View child = kept.valueAt(i);
+			removeDetachedView(child, false);
+			discardChild(child);
+		}
+		kept.clear();
+		changed.clear();
+		invalidate();
+	}
+	
+	/**
+	 * Called with pending item changes before they are applied to children, containers with own caches drop stale items here
+	 */
+	protected void onApplyItemChanges(ItemChangeSet changes){
+	}
+	
+	/**
+	 * Shows new data of item in child at index, default implementation lets adapter rebind view of child
+	 * and replaces child when adapter returns different view
+	 */
+	protected void rebindChild(int index, int position){
+		final View child = getChildAt(index);
+		final View v = mAdapter.getView(position, child, this);
+		Validate.notNull(v, "Your adapter has returned null from getView.");
+		if(v == child){
+			child.requestLayout();
+			return;
+		}
+		
+		final LayoutParams lp = child.getLayoutParams();
+		removeViewInLayout(child);
+		discardChild(child);
+		addViewInLayout(v, index, v.getLayoutParams() instanceof LoopLayoutParams ? v.getLayoutParams() : lp, true);
+		measureChild(v);
+		v.setDrawingCacheEnabled(true);
+	}
+	
+	/**
+	 * Called for child removed because its item was removed from adapter or it's not needed anymore after item changes
+	 */
+	protected void discardChild(View child){
+	}
+
 	/**
 	 * Allows to make scroll alignments
 	 * @return true if invalidate() was issued, and container is going to scroll
@@ -938,19 +1567,25 @@ public class EndlessLoopAdapterContainer extends AdapterView<Adapter> {
 	}
 
 	/**
-	 * Check if list of weak references has any view still in memory to offer for recyclation
-	 * @return cached view
+	 * @param position adapter position of item, which is going to be created
+	 * @return scrap view of same type as item on position or null
 	 */
-	protected View getCachedView(){
-		if (mCachedItemViews.size() != 0) {
-			View v;
-			do{
-	            v = mCachedItemViews.removeFirst().get();
-			}
-            while(v == null && mCachedItemViews.size() != 0);
-			return v;
-        }
-        return null;
+	protected View getCachedView(int position){
+		return mScrapHeap.get(mAdapter.getItemViewType(position));
+	}
+
+	/**
+	 * @param maxViewsPerType how many removed item views of each view type are kept for reuse
+	 */
+	public void setMaxScrapViewsPerType(int maxViewsPerType){
+		mScrapHeap.setMaxViewsPerType(maxViewsPerType);
+	}
+
+	/**
+	 * @return heap of removed item views, with statistics of reuse
+	 */
+	public ScrapHeap getScrapHeap(){
+		return mScrapHeap;
 	}
 
 	protected void enableChildrenCache() {
@@ -4,10 +4,10 @@
 package com.jason.treadmills.ui.viewcoverflow;
 
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
-import android.graphics.Camera;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.LinearGradient;
@@ -19,7 +19,6 @@ import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader.TileMode;
-import android.support.v4.util.LruCache;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.Display;
@@ -27,15 +26,19 @@ import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.ViewTreeObserver;
 import android.view.WindowManager;
-import android.view.animation.DecelerateInterpolator;
+import android.widget.Adapter;
 import android.widget.FrameLayout;
-import android.widget.Scroller;
 
 import com.jason.treadmills.R;
 import com.jason.treadmills.general.Validate;
+import com.jason.treadmills.utils.BitmapPool;
+import com.jason.treadmills.utils.FrameScheduler;
+import com.jason.treadmills.utils.IntLruCache;
 import com.jason.treadmills.utils.Logger;
+import com.jason.treadmills.utils.TrimMemoryHelper;
 
 import java.lang.ref.WeakReference;
 import java.util.LinkedList;
@@ -47,22 +50,43 @@ import java.util.LinkedList;
  * Note: Supports wrap content for height
  * 
  */
-public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements ViewTreeObserver.OnPreDrawListener {
+public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements ViewTreeObserver.OnPreDrawListener, TrimMemoryHelper.OnTrimMemoryListener {
 	public static final int DEFAULT_MAX_CACHE_SIZE = 32;
 	
+	/** Default budget of cover cache in bytes, sixteenth of the heap available to the VM */
+	public static final long DEFAULT_MAX_CACHE_BYTES = Runtime.getRuntime().maxMemory() / 16;
+	
+	/** Every cover keeps its own reflection bitmap masked by gradient */
+	public static final int REFLECTION_MODE_PER_COVER = 0;
+	/** Reflections of all visible covers are drawn mirrored into one layer, which is masked by single gradient */
+	public static final int REFLECTION_MODE_BAND = 1;
+	
+	/** Covers are drawn from software drawing cache with transformation applied on canvas */
+	public static final int RENDER_MODE_SOFTWARE = 0;
+	/** Covers are drawn from hardware layers with transformation set as view properties. Requires API 11, falls back to software */
+	public static final int RENDER_MODE_HARDWARE = 1;
+	
 	/**
-     * Graphics Camera used for generating transformation matrices;
-     */
-    private final Camera mCamera = new Camera();
+	 * Closed form computation of cover transformations
+	 */
+	private final CoverFlowGeometry mGeometry = new CoverFlowGeometry();
+	private final float[] mMatrixValues = new float[9];
 	/**
 	 * Relative spacing value of Views in container. If <1 Views will overlap, if >1 Views will have spaces between them
 	 */
 	private float mSpacing = 0.3f;
 	
 	/**
-	 * Index of view in center of screen, which is most in foreground
+	 * Drawing order of children computed once per frame by {@link #computeDrawingOrder()}.
+	 * Item on index i is index of child drawn as i-th, view in center of screen is drawn last (most in foreground)
 	 */
-	private int mReverseOrderIndex = -1;
+	private int[] mDrawingOrder = new int[0];
+	/** Drawing order is computed for these children at this scroll, it is dropped by layout and by adding or removing child */
+	private boolean mDrawingOrderValid;
+	private int mDrawingOrderCount;
+	private View mDrawingOrderFirstChild;
+	private int mDrawingOrderFirstLeft;
+	private int mDrawingOrderScrollX;
 	
 	private int mLastCenterItemIndex = -1;
 	
@@ -140,6 +164,16 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	private int mReflectionBackgroundColor = Color.TRANSPARENT;
 	
+	/**
+	 * How are reflections drawn, {@link #REFLECTION_MODE_PER_COVER} or {@link #REFLECTION_MODE_BAND}
+	 */
+	private int mReflectionMode = REFLECTION_MODE_PER_COVER;
+	
+	/**
+	 * How are covers drawn, {@link #RENDER_MODE_SOFTWARE} or {@link #RENDER_MODE_HARDWARE}. Can be set only from xml
+	 */
+	private int mRenderMode = RENDER_MODE_SOFTWARE;
+	
 	/** A list of cached (re-usable) cover frames */
     protected final LinkedList<WeakReference<CoverFrame>> mRecycledCoverFrames = new LinkedList<WeakReference<CoverFrame>>();
 
@@ -154,20 +188,38 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
         public void onScrolling();
     }
 
+    /** A listener for position where fling stops */
+    private OnFlingTargetListener mOnFlingTargetListener;
+
+    /** Adapter position of cover which will be in center when running fling stops */
+    private int mFlingTargetPosition = -1;
+
+    public interface OnFlingTargetListener {
+        /**
+         * Called when fling starts, before covers around target are prefetched
+         * @param position adapter position of cover which will be in center when fling stops
+         */
+        public void onFlingTarget(int position);
+    }
+
 	private int mPaddingTop = 0;
 	private int mPaddingBottom = 0;
 	
 	private int mCenterItemOffset;
-	private final Scroller mAlignScroller = new Scroller(getContext(), new DecelerateInterpolator());
+	private final ScrollAnimator mAlignScroller = new ScrollAnimator(ScrollAnimator.computeDeceleration(getResources().getDisplayMetrics().density));
+	
+	private final FrameScheduler.FrameCallback mAlignFrameCallback = new FrameScheduler.FrameCallback() {
+		@Override
+		public boolean doFrame(long frameTimeNanos) {
+			return onAlignFrame(frameTimeNanos);
+		}
+	};
 	
 	private final MyCache mCachedFrames;
 	
 	private int mCoverWidth = 160;
 	private int mCoverHeight = 160;
 	
-	private final Matrix mMatrix = new Matrix();
-	private final Matrix mTemp = new Matrix();
-	private final Matrix mTempHit = new Matrix();
 	private final Rect mTempRect = new Rect();
 	private final RectF mTouchRect = new RectF();
 
@@ -177,46 +229,118 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	
 	//reflection 倒影相关
 	private final Matrix mReflectionMatrix = new Matrix();
+	private final Matrix mInverseTransform = new Matrix();
 	private final Paint mPaint = new Paint();
 	private final Paint mReflectionPaint = new Paint();
 	private final PorterDuffXfermode mXfermode = new PorterDuffXfermode(Mode.DST_IN);
 	private final Canvas mReflectionCanvas = new Canvas();
+	private LinearGradient mReflectionShader;
+	private int mReflectionShaderHeight = -1;
+	
+	//band reflection mode
+	private final RectF mBandRect = new RectF();
+	private final Paint mBandMaskPaint = new Paint();
+	private LinearGradient mBandShader;
+	private int mBandShaderTop = -1;
+	private int mBandShaderBottom = -1;
 	
 	private int mScrollToPositionOnNextInvalidate = -1;
 	
+	/** Position to jump to after container is filled, -1 if none */
+	private int mJumpToPositionOnLayout = -1;
+	
 	
 	private boolean mInvalidated = false;
 	
+	/** Set when any cover content was invalidated since last dispatchDraw */
+	private boolean mCoversDirty = false;
+	
+	/** Observer on which is this widget registered as pre draw listener, null when not registered */
+	private ViewTreeObserver mPreDrawObserver;
+	
+	/** Number of onPreDraw calls */
+	private int mPreDrawCallCount;
+	
+	/** Widget is aligned and nothing moves or changes, drawn frames skip focus and listener work */
+	private boolean mIdle = false;
+	
+	/** Number of frames drawn while widget was idle */
+	private int mIdleFrameCount;
+	
+	/** Lowers rendering quality when frames take too long */
+	private final FrameQualityGovernor mQualityGovernor = new FrameQualityGovernor();
+	private boolean mAdaptiveQuality = false;
+	
+	/** In {@link FrameQualityGovernor#TIER_REDUCED_COVERS} only this many covers on each side of center are drawn */
+	private int mReducedSideCovers = 2;
+	
+	/** Registration of memory trim callbacks, null when not registered */
+	private Object mTrimRegistration;
+	
+	/** Set while memory is being trimmed, frames evicted from cache then release their bitmaps instead of pooling them */
+	private boolean mTrimming = false;
+	private long mTrimReleasedBytes;
+	private long mLastTrimReleasedBytes;
+	private long mTotalTrimReleasedBytes;
+	private int mTrimEventCount;
+	
+	/** Paint for cover bitmaps, configured only when quality tier changes */
+	private final Paint mCoverPaint = new Paint();
+	private int mCoverPaintTier = -1;
 	
-	private class MyCache extends LruCache<Integer, CoverFrame> {
+	/** Transformed bounds of cover with its reflection, used for culling */
+	private final RectF mCullRect = new RectF();
+	
+	/** Number of covers skipped in current frame because they were outside of clip */
+	private int mCulledCoverCount;
+	
+	/**
+	 * Incremented whenever widget size or tuning attributes change. Cached child transformations computed
+	 * with different generation are stale
+	 */
+	private int mTransformGeneration = 0;
+	
+	
+	private class MyCache extends IntLruCache<CoverFrame> {
 
-		public MyCache(int maxSize) {
-			super(maxSize);
+		public MyCache(long maxBytes) {
+			super(maxBytes);
 		}
 
 		@Override
-		protected void entryRemoved(boolean evicted, Integer key, CoverFrame oldValue, CoverFrame newValue) {
+		protected int sizeOf(int key, CoverFrame value) {
+			return value.getCacheBytes();
+		}
+
+		@Override
+		protected void entryRemoved(boolean evicted, int key, CoverFrame oldValue, CoverFrame newValue) {
 			if(evicted){
-				if(oldValue.getChildCount() == 1){
-					mCachedItemViews.addLast(new WeakReference<View>(oldValue.getChildAt(0)));
-					recycleCoverFrame(oldValue); // removes children, must be after caching children
-				}
+				if(mTrimming) mTrimReleasedBytes += oldValue.releaseCaches();
+				scrapCoverFrame(oldValue);
+			}
+			else if(newValue != null && newValue != oldValue){
+				//same position is on screen more times, replaced frame is not reachable anymore
+				scrapCoverFrame(oldValue);
 			}
 		}		
 		
 	}
 
+	/**
+	 * @param cacheSize number of covers kept in cache, converted to bytes by size of cover with reflection.
+	 * Byte budget is set by maxCacheBytes attribute or {@link #setMaxCacheBytes(long)}
+	 */
 	public FeatureCoverFlow(Context context, AttributeSet attrs, int defStyle, int cacheSize) {
+		this(context, attrs, defStyle, 0, cacheSize > 0 ? cacheSize : DEFAULT_MAX_CACHE_SIZE);
+	}
+
+	private FeatureCoverFlow(Context context, AttributeSet attrs, int defStyle, long cacheSizeBytes, int cacheEntries) {
 		super(context, attrs, defStyle);
 		
-		if(cacheSize <= 0) cacheSize = DEFAULT_MAX_CACHE_SIZE; 
-		mCachedFrames = new MyCache(cacheSize);
-		
 		setChildrenDrawingOrderEnabled(true);
-		setChildrenDrawingCacheEnabled(true);
-		setChildrenDrawnWithCacheEnabled(true);
 		
 		mReflectionMatrix.preScale(1.0f, -1.0f);
+		mBandMaskPaint.setXfermode(mXfermode);
 		
 		//init params from xml
 		if(attrs != null){
@@ -242,9 +366,27 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 			mPaddingTop = a.getDimensionPixelSize(R.styleable.FeatureCoverFlow_verticalPaddingTop, mPaddingTop);
 			mPaddingBottom = a.getDimensionPixelSize(R.styleable.FeatureCoverFlow_verticalPaddingBottom, mPaddingBottom);
 			mReflectionBackgroundColor = a.getColor(R.styleable.FeatureCoverFlow_reflectionBackroundColor, Color.TRANSPARENT);
+			mReflectionMode = a.getInt(R.styleable.FeatureCoverFlow_reflectionMode, mReflectionMode);
+			mRenderMode = a.getInt(R.styleable.FeatureCoverFlow_renderMode, mRenderMode);
+			mAdaptiveQuality = a.getBoolean(R.styleable.FeatureCoverFlow_adaptiveQuality, mAdaptiveQuality);
+			if(cacheSizeBytes <= 0 && cacheEntries <= 0){
+				cacheSizeBytes = a.getInt(R.styleable.FeatureCoverFlow_maxCacheBytes, 0);
+			}
 			
 			a.recycle();		
 		}
+		
+		if(cacheSizeBytes <= 0){
+			cacheSizeBytes = cacheEntries > 0 ? cacheEntries * getEstimatedCoverBytes() : DEFAULT_MAX_CACHE_BYTES;
+		}
+		mCachedFrames = new MyCache(cacheSizeBytes);
+		
+		if(!isHardwareRendering()){
+			setChildrenDrawingCacheEnabled(true);
+			setChildrenDrawnWithCacheEnabled(true);
+		}
+		
+		updateGeometry();
 	}
 
 	public FeatureCoverFlow(Context context, AttributeSet attrs) {
@@ -256,13 +398,37 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	}
 	
 	public FeatureCoverFlow(Context context, AttributeSet attrs, int defStyle) {
-		this(context, attrs, defStyle, DEFAULT_MAX_CACHE_SIZE);
+		this(context, attrs, defStyle, 0, 0);
+	}
+	
+	/**
+	 * @return bytes of drawing cache and reflection of cover with configured size
+	 */
+	private long getEstimatedCoverBytes(){
+		return 4L * mCoverWidth * (long) (mCoverHeight * (1 + mReflectionHeight));
 	}
 	
 	
 	private class CoverFrame extends FrameLayout{
 		private Bitmap mReflectionCache;
 		private boolean mReflectionCacheInvalid = true;
+		
+		/** Adapter view type of wrapped cover */
+		private int mViewType;
+		
+		/** Adapter id of wrapped cover, used as cache key when adapter has stable ids */
+		private long mItemId;
+		
+		/** Bytes of last drawing cache bitmap, 0 if it wasn't built yet */
+		private int mDrawingCacheBytes;
+		
+		/** Transformation used for drawing and hit testing, valid for values of fields below */
+		private final Matrix mTransform = new Matrix();
+		private int mTransformGeneration = -1;
+		private int mTransformScrollX;
+		private int mTransformLeft;
+		private int mTransformWidth;
+		private int mTransformHeight;
 
 
 		public CoverFrame(Context context, View cover) {
@@ -284,9 +450,6 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 				parent.removeView(cover);
 			}
 			
-			//register observer to catch cover redraws
-			cover.getViewTreeObserver().addOnPreDrawListener(FeatureCoverFlow.this);
-			
 			addView(cover,lp);
 		}
 
@@ -295,17 +458,35 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 			super.dispatchDraw(canvas);
 			mReflectionCacheInvalid = true;
 		}
+		
+		@Override
+		public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+			//cover redraws itself, container has to redraw whole transformed area of this frame
+			mCoversDirty = true;
+			wakeUp();
+			return super.invalidateChildInParent(location, dirty);
+		}
 
 
 		@Override
 		public Bitmap getDrawingCache(boolean autoScale) {
 			final Bitmap b = super.getDrawingCache(autoScale);
+			mDrawingCacheBytes = b != null ? BitmapPool.getBitmapBytes(b) : 0;
+
+			if(mReflectionMode == REFLECTION_MODE_BAND){
+				//reflection is drawn directly from cover bitmap
+				if(mReflectionCache != null){
+					BitmapPool.getDefault().put(mReflectionCache);
+					mReflectionCache = null;
+				}
+				return b;
+			}
 
-			if(mReflectionCacheInvalid){
+			if(mReflectionCacheInvalid && getQualityTier() < FrameQualityGovernor.TIER_NO_REFLECTIONS){
 				if((mTouchState != TOUCH_STATE_FLING && mTouchState != TOUCH_STATE_ALIGN) || mReflectionCache == null){
 					try{
                         // 获得倒影的图片
-						mReflectionCache = createReflectionBitmap(b);
+						mReflectionCache = createReflectionBitmap(b, mReflectionCache);
 						mReflectionCacheInvalid = false;
 					}
 					catch (NullPointerException e){
@@ -316,23 +497,62 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 			return b; 
 		}
 		
+		/**
+		 * @return bytes held by drawing cache and reflection of this frame. Drawing cache exists only while frame is attached,
+		 * detached frame is charged for the cache it rebuilds when attached again, estimated from frame size
+		 */
+		public int getCacheBytes(){
+			int bytes = mDrawingCacheBytes;
+			if(bytes == 0) bytes = 4 * getWidth() * getHeight();
+			if(mReflectionCache != null) bytes += BitmapPool.getBitmapBytes(mReflectionCache);
+			return Math.max(bytes, 1);
+		}
+		
+		/**
+		 * Recycles reflection bitmap, it is rebuilt on next draw
+		 * @return released bytes
+		 */
+		public int releaseReflection(){
+			if(mReflectionCache == null) return 0;
+			
+			final int bytes = BitmapPool.getBitmapBytes(mReflectionCache);
+			mReflectionCache.recycle();
+			mReflectionCache = null;
+			mReflectionCacheInvalid = true;
+			return bytes;
+		}
+		
+		/**
+		 * Recycles reflection and drawing cache, both are rebuilt on next draw
+		 * @return released bytes
+		 */
+		public int releaseCaches(){
+			final int bytes = releaseReflection() + mDrawingCacheBytes;
+			destroyDrawingCache();
+			return bytes;
+		}
+		
+		@Override
+		public void destroyDrawingCache() {
+			super.destroyDrawingCache();
+			mDrawingCacheBytes = 0;
+		}
+		
 		public void recycle(){
 			if(mReflectionCache != null){
-				mReflectionCache.recycle();
+				BitmapPool.getDefault().put(mReflectionCache);
 				mReflectionCache = null;
 			}
 			
 			mReflectionCacheInvalid = true;
+			mDrawingCacheBytes = 0;
+			mTransformGeneration = -1;
 			removeAllViewsInLayout();
 		}
 		
 	}
 
 	
-	private float getWidgetSizeMultiplier(){
-		return ((float)mTuningWidgetSize)/((float)getWidth());
-	}
-
 	@Override
 	protected View addAndMeasureChildHorizontal(View child, int layoutMode) {
 		final int index = layoutMode == LAYOUT_MODE_TO_BEFORE ? 0 : -1;
@@ -346,23 +566,60 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	        return child;
 		}
 		
-		
+		final CoverFrame frame = wrapCover(child);
+        
+        addViewInLayout(frame, index, lp, true);
+        measureChild(frame);
+        return frame;
+	}
+	
+	/**
+	 * Wraps cover into recycled or new frame prepared for current render mode
+	 */
+	private CoverFrame wrapCover(View cover){
 		CoverFrame frame = getRecycledCoverFrame();
 		if(frame == null){
-			frame = new CoverFrame(getContext(), child);
+			frame = new CoverFrame(getContext(), cover);
 		}
 		else{
-			frame.setCover(child);
+			frame.setCover(cover);
 		}		
 		
-		//to enable drawing cache
-		if(android.os.Build.VERSION.SDK_INT >= 11) frame.setLayerType(LAYER_TYPE_SOFTWARE, null);
-		frame.setDrawingCacheEnabled(true);
-        
-        
-        addViewInLayout(frame, index, lp, true);
-        measureChild(frame);
-        return frame;
+		if(isHardwareRendering()){
+			//renderer keeps cover texture, transformation is applied by view properties
+			frame.setLayerType(LAYER_TYPE_HARDWARE, null);
+			frame.setDrawingCacheEnabled(false);
+		}
+		else{
+			//to enable drawing cache
+			if(android.os.Build.VERSION.SDK_INT >= 11) frame.setLayerType(LAYER_TYPE_SOFTWARE, null);
+			frame.setDrawingCacheEnabled(true);
+		}
+		return frame;
+	}
+	
+	/**
+	 * Creates frame for position off screen, lays it out in cover size and in software mode draws its drawing cache
+	 * and reflection. Frame is parked in cover cache, from where it is taken when position scrolls in.
+	 * Drawing cache survives adding to container, because size of frame doesn't change
+	 */
+	@Override
+	protected boolean prefetchItem(int position){
+		if(mCachedFrames.containsKey(getCacheKey(position)) || mCoverWidth <= 0 || mCoverHeight <= 0) return false;
+		
+		final View cover = mAdapter.getView(position, getCachedView(position), this);
+		Validate.notNull(cover, "Your adapter has returned null from getView.");
+		
+		final CoverFrame frame = wrapCover(cover);
+		frame.mViewType = mAdapter.getItemViewType(position);
+		frame.mItemId = mAdapter.getItemId(position);
+		frame.measure(MeasureSpec.makeMeasureSpec(mCoverWidth, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(mCoverHeight, MeasureSpec.EXACTLY));
+		frame.layout(0, 0, mCoverWidth, mCoverHeight);
+		if(!isHardwareRendering()) frame.getDrawingCache();
+		
+		mCachedFrames.put(getCacheKey(position), frame);
+		return true;
 	}
 
 	@Override
@@ -401,44 +658,84 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 
 	@Override
 	protected int getChildDrawingOrder(int childCount, int i) {
-		final int screenCenter = getWidth()/2 + getScrollX();
-		final int myCenter = getChildsCenter(i);
-        //子view和屏幕中线的距离， 在中线的左边 < 0 在中线的右边 > 0
-		final int d = myCenter - screenCenter;
-		//获得第i位的孩子view
-		final View v = getChildAt(i);
-
-        //子View本身的宽度与设置的spacing的积 -> 子View所需的宽度
-		final int sz = (int) (mSpacing * v.getWidth()/2f);
-
-        //在屏幕中间的子View的index， 如果没有
-		if(mReverseOrderIndex == -1 &&
-            (Math.abs(d) < sz  //
-           || d >= 0)){
-            //将该View设为屏幕中间的View
-			mReverseOrderIndex = i;
-			mCenterItemOffset = d;
-            //保存当前的中间子View的index
-			mLastCenterItemIndex = i;
-            //返回顺序为最后的index
-			return childCount-1;
-		}
+		if(!isDrawingOrderValid(childCount)) computeDrawingOrder();
+		return mDrawingOrder[i];
+	}
+
+	private boolean isDrawingOrderValid(int childCount){
+		if(!mDrawingOrderValid || mDrawingOrderCount != childCount || mDrawingOrderScrollX != getScrollX()) return false;
+		if(childCount == 0) return true;
+		final View first = getChildAt(0);
+		return first == mDrawingOrderFirstChild && first.getLeft() == mDrawingOrderFirstLeft;
+	}
+
+	@Override
+	protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+		mDrawingOrderValid = false;
+		super.onLayout(changed, left, top, right, bottom);
+	}
+
+	@Override
+	protected boolean addViewInLayout(View child, int index, ViewGroup.LayoutParams params, boolean preventRequestLayout) {
+		mDrawingOrderValid = false;
+		return super.addViewInLayout(child, index, params, preventRequestLayout);
+	}
 
-		if(mReverseOrderIndex == -1){
-			return i;
+	@Override
+	public void removeViewInLayout(View view) {
+		mDrawingOrderValid = false;
+		super.removeViewInLayout(view);
+	}
+
+	/**
+	 * Finds view in center of screen and computes drawing order of all children in one pass.
+	 * Children left from center are drawn in their order, children right from center in reverse order and center view last.
+	 * Also updates {@link #mCenterItemOffset} and {@link #mLastCenterItemIndex} when center view is found.
+	 */
+	private void computeDrawingOrder(){
+		final int childCount = getChildCount();
+		if(mDrawingOrder.length < childCount){
+			mDrawingOrder = new int[childCount];
 		}
-		else{//如果中间的View存在
+		mDrawingOrderValid = true;
+		mDrawingOrderCount = childCount;
+		mDrawingOrderScrollX = getScrollX();
+		mDrawingOrderFirstChild = childCount > 0 ? getChildAt(0) : null;
+		mDrawingOrderFirstLeft = childCount > 0 ? mDrawingOrderFirstChild.getLeft() : 0;
 
-			if(i == childCount-1) {
-				final int x = mReverseOrderIndex;
-				mReverseOrderIndex = -1;
-                //返回中间View的index
-				return x;
+		final int screenCenter = getWidth()/2 + getScrollX();
+		int centerIndex = -1;
+		for(int i=0; i < childCount; i++){
+			final View v = getChildAt(i);
+			//子view和屏幕中线的距离， 在中线的左边 < 0 在中线的右边 > 0
+			final int d = getChildsCenter(v) - screenCenter;
+			//子View本身的宽度与设置的spacing的积 -> 子View所需的宽度
+			final int sz = (int) (mSpacing * v.getWidth()/2f);
+
+			if(Math.abs(d) < sz || d >= 0){
+				centerIndex = i;
+				mCenterItemOffset = d;
+				//保存当前的中间子View的index
+				mLastCenterItemIndex = i;
+				break;
 			}
-            //返回其它的index
+		}
 
-            Logger.showErrorLog("childCount", childCount +" " + mReverseOrderIndex + " " + (childCount - 1 - (i-mReverseOrderIndex)));
-			return childCount - 1 - (i-mReverseOrderIndex);
+		if(centerIndex == -1){
+			for(int i=0; i < childCount; i++) mDrawingOrder[i] = i;
+			return;
+		}
+
+		for(int i=0; i < centerIndex; i++){
+			mDrawingOrder[i] = i;
+		}
+		//中间的View最后绘制
+		mDrawingOrder[centerIndex] = childCount - 1;
+		for(int i=centerIndex+1; i < childCount-1; i++){
+			mDrawingOrder[i] = childCount - 1 - (i - centerIndex);
+		}
+		if(centerIndex != childCount-1){
+			mDrawingOrder[childCount-1] = centerIndex;
 		}
 	}
 
@@ -446,24 +743,39 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	@Override
 	protected void refillInternal(int lastItemPos, int firstItemPos) {
 		super.refillInternal(lastItemPos, firstItemPos);
-
-		final int c = getChildCount();
-		for(int i=0; i < c; i++){
-			getChildDrawingOrder(c, i); //go through children to fill center item offset
+		
+		if(mJumpToPositionOnLayout != -1 && getChildCount() != 0){
+			final int position = mJumpToPositionOnLayout;
+			mJumpToPositionOnLayout = -1;
+			if(position < mAdapter.getCount()) jumpToPosition(position);
 		}
 
+		computeDrawingOrder(); //fill center item offset
 	}
 
 	@Override
 	protected void dispatchDraw(Canvas canvas) {
 		mInvalidated = false; //last invalidate which marked redrawInProgress, caused this dispatchDraw. Clear flag to prevent creating loop
-				
-		mReverseOrderIndex = -1;
+		if(mIdle && !canBeIdle()) mIdle = false;
+		if(mIdle) mIdleFrameCount++;
+		mCoversDirty = false;
+		mCulledCoverCount = 0;
+		
+		if(mAdaptiveQuality){
+			if(mIdle) mQualityGovernor.pause();
+			else mQualityGovernor.onFrame(System.nanoTime());
+		}
+		updateCoverPaint();
+
+		computeDrawingOrder();
 		canvas.getClipBounds(mTempRect);
 		mTempRect.top = 0;
 		mTempRect.bottom = getHeight();
 		canvas.clipRect(mTempRect);
 
+		if(isHardwareRendering()) applyChildrenProperties();
+		if((mReflectionMode == REFLECTION_MODE_BAND || isHardwareRendering())
+				&& getQualityTier() < FrameQualityGovernor.TIER_NO_REFLECTIONS) drawReflectionBand(canvas);
 		super.dispatchDraw(canvas);
 		if(mScrollToPositionOnNextInvalidate != -1 && mAdapter != null && mAdapter.getCount() > 0){
 
@@ -482,6 +794,8 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 
         if(mLastCenterItemIndex == -1)
             return;
+        if(mIdle) //state was already reported and focus requested
+            return;
         if(mTouchState == TOUCH_STATE_RESTING){
 
             final int lastCenterItemPosition = (mFirstItemPosition + mLastCenterItemIndex) % mAdapter.getCount();
@@ -516,6 +830,189 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 		catch (Exception e) {
 			e.printStackTrace();
 		}
+
+		mIdle = canBeIdle();
+		if(mIdle && mAdaptiveQuality && mQualityGovernor.getTier() != FrameQualityGovernor.TIER_FULL){
+			//static screen is drawn once more in full quality
+			mQualityGovernor.reset();
+			invalidate();
+		}
+	}
+
+	/**
+	 * Applies quality tier to paint used for drawing covers
+	 */
+	private void updateCoverPaint(){
+		final int tier = getQualityTier();
+		if(tier == mCoverPaintTier) return;
+		
+		final boolean filter = tier < FrameQualityGovernor.TIER_NO_FILTERING;
+		mCoverPaint.reset();
+		mCoverPaint.setAntiAlias(filter);
+		mCoverPaint.setFilterBitmap(filter);
+		mCoverPaintTier = tier;
+	}
+
+	/**
+	 * Checks transformed bounds of cover including its reflection against canvas clip.
+	 * Uses only cached transformation, drawing cache of child is not touched.
+	 * @return true if child would not draw anything visible
+	 */
+	private boolean isCulled(Canvas canvas, View child){
+		final float reflection = getQualityTier() < FrameQualityGovernor.TIER_NO_REFLECTIONS
+				? mReflectionGap + child.getHeight() * mReflectionHeight : 0;
+		mCullRect.set(0, 0, child.getWidth(), child.getHeight() + reflection);
+		getChildTransformation(child).mapRect(mCullRect);
+		mCullRect.offset(child.getLeft(), child.getTop());
+		return canvas.quickReject(mCullRect, Canvas.EdgeType.AA);
+	}
+
+	/**
+	 * @return number of covers skipped in last drawn frame because they were outside of visible area
+	 */
+	public int getCulledCoverCount(){
+		return mCulledCoverCount;
+	}
+
+	/**
+	 * @return false if child is too far from center to be drawn in current quality tier
+	 */
+	private boolean isDrawnInQualityTier(View child){
+		if(getQualityTier() < FrameQualityGovernor.TIER_REDUCED_COVERS) return true;
+		
+		final int d = Math.abs(getChildsCenter(child) - (getWidth()/2 + getScrollX()));
+		return d <= (mReducedSideCovers + 0.5f) * child.getWidth();
+	}
+
+	/**
+	 * @return true when widget is aligned in resting state, no scroller is running and no cover waits for redraw
+	 */
+	private boolean canBeIdle(){
+		return mTouchState == TOUCH_STATE_RESTING
+				&& mScroller.isFinished()
+				&& mAlignScroller.isFinished()
+				&& mScrollToPositionOnNextInvalidate == -1
+				&& mCenterItemOffset == 0
+				&& mLastCenterItemIndex != -1
+				&& !mCoversDirty;
+	}
+
+	/**
+	 * Leave idle state, next frame does full work again
+	 */
+	private void wakeUp(){
+		mIdle = false;
+	}
+
+	/**
+	 * Widget is idle when it is aligned, no scroll or fling is running and no cover changed.
+	 * Idle widget does not invalidate itself and frames drawn because of outside invalidation skip focus and listener work.
+	 * Input, adapter change or scrolling wakes it up.
+	 * @return true if widget is idle
+	 */
+	public boolean isIdle(){
+		return mIdle && canBeIdle();
+	}
+
+	/**
+	 * @return number of frames which were drawn while widget was idle
+	 */
+	public int getIdleFrameCount(){
+		return mIdleFrameCount;
+	}
+
+	@Override
+	protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+		super.onScrollChanged(l, t, oldl, oldt);
+		wakeUp();
+	}
+
+	/**
+	 * Full data change doesn't say which items changed, item with same id may show new content,
+	 * so cached frames are dropped also in stable id mode. Frames survive only item notifications
+	 */
+	@Override
+	protected void onAdapterDataChanged() {
+		wakeUp();
+		clearCache();
+	}
+
+	@Override
+	public void setAdapter(Adapter adapter) {
+		wakeUp();
+		clearCache();
+		super.setAdapter(adapter);
+	}
+	
+	@Override
+	protected void onItemChangesPending() {
+		wakeUp();
+	}
+	
+	/**
+	 * Cached frames of changed items are dropped, whole cache is dropped when positions moved,
+	 * unless frames are cached by stable ids
+	 */
+	@Override
+	protected void onApplyItemChanges(ItemChangeSet changes) {
+		if(changes.isOverflow()){
+			clearCache();
+			return;
+		}
+		if(changes.isStructural()){
+			if(!isStableIdCache()) clearCache();
+			else{
+				//positions of changed items can't be mapped back through later operations
+				for(int i = 0; i < changes.getOpCount(); i++){
+					if(changes.getOpType(i) == ItemChangeSet.OP_CHANGE){
+						clearCache();
+						return;
+					}
+				}
+			}
+			return;
+		}
+		
+		for(int i = 0; i < changes.getOpCount(); i++){
+			final int start = changes.getOpStart(i);
+			final int count = changes.getOpItemCount(i);
+			if(count > mCachedFrames.count()){
+				clearCache();
+				return;
+			}
+			for(int p = start; p < start + count; p++){
+				final CoverFrame frame = mCachedFrames.remove(getCacheKey(p));
+				if(frame != null) scrapCoverFrame(frame);
+			}
+		}
+	}
+	
+	/**
+	 * Cover is rebound by adapter inside its frame, only drawing cache and reflection of this frame are rebuilt
+	 */
+	@Override
+	protected void rebindChild(int index, int position) {
+		final CoverFrame frame = (CoverFrame) getChildAt(index);
+		final View cover = frame.getChildCount() == 1 ? frame.getChildAt(0) : null;
+		final View v = mAdapter.getView(position, cover, this);
+		Validate.notNull(v, "Your adapter has returned null from getView.");
+		
+		if(v != cover){
+			final LayoutParams lp = frame.getLayoutParams();
+			frame.removeAllViewsInLayout();
+			if(cover != null) mScrapHeap.put(cover, frame.mViewType);
+			frame.setCover(v);
+			frame.setLayoutParams(lp); //setCover takes params of cover
+			frame.mViewType = mAdapter.getItemViewType(position);
+		}
+		frame.mItemId = mAdapter.getItemId(position);
+		measureChild(frame);
+		frame.invalidate();
+	}
+	
+	@Override
+	protected void discardChild(View child) {
+		scrapCoverFrame((CoverFrame) child);
 	}
 
 	@Override
@@ -548,9 +1045,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 				return;
 			}
 			
-			child = mAdapter.getView(mLastItemPosition, getCachedView(), this);
-            Validate.notNull(child, "Your adapter has returned null from getView.");
-            child = addAndMeasureChildHorizontal(child, LAYOUT_MODE_AFTER);
+			child = obtainChild(mLastItemPosition, LAYOUT_MODE_AFTER);
 			left = layoutChildHorizontal(child, left, (LoopLayoutParams) child.getLayoutParams());
 			right = child.getRight();
 			
@@ -579,10 +1074,41 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 
 
 
+	/**
+	 * @return true if cover cache is keyed by adapter item ids, so cached frames survive changes of positions
+	 */
+	public boolean isStableIdCache(){
+		return mAdapter != null && mAdapter.hasStableIds();
+	}
+	
+	/**
+	 * @return key of item on position in cover cache, hash of item id in stable id mode
+	 */
+	private int getCacheKey(int position){
+		if(!isStableIdCache()) return position;
+		return getIdCacheKey(mAdapter.getItemId(position));
+	}
+	
+	private static int getIdCacheKey(long id){
+		return (int) (id ^ (id >>> 32));
+	}
+	
+	/**
+	 * Different ids can have same key, cached frame is used only when its id matches
+	 */
+	private CoverFrame removeCachedFrame(int position){
+		final CoverFrame frame = mCachedFrames.remove(getCacheKey(position));
+		if(frame != null && isStableIdCache() && frame.mItemId != mAdapter.getItemId(position)){
+			scrapCoverFrame(frame);
+			return null;
+		}
+		return frame;
+	}
+
 	private View getViewAtPosition(int position){
-		View v = mCachedFrames.remove(position);
+		View v = removeCachedFrame(position);
 		if(v == null) {
-            v = mAdapter.getView(position, getCachedView(), this);
+            v = mAdapter.getView(position, getCachedView(position), this);
             Validate.notNull(v, "Your adapter has returned null from getView.");
             return v;
         }
@@ -591,19 +1117,71 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 			return v;
 		}
 		else {
-            v = mAdapter.getView(position, getCachedView(), this);
+            v = mAdapter.getView(position, getCachedView(position), this);
             Validate.notNull(v, "Your adapter has returned null from getView.");
             return v;
         }
     }
+	
+	/**
+	 * Takes frame of position from cover cache, or wraps cover from adapter into frame
+	 * @return added frame
+	 */
+	@Override
+	protected View obtainChild(int position, int layoutMode){
+		final View v = getViewAtPosition(position);
+		final View frame = addAndMeasureChildHorizontal(v, layoutMode);
+		if(frame != v){
+			((CoverFrame) frame).mViewType = mAdapter.getItemViewType(position);
+			((CoverFrame) frame).mItemId = mAdapter.getItemId(position);
+		}
+		return frame;
+	}
+	
+	/**
+	 * Frames which scrolled out of screen are kept in cover cache with their covers and reflections, so scrolling back
+	 * doesn't ask adapter again. Removed frame is detached from window, which destroys its drawing cache, it is rebuilt
+	 * when frame is attached again
+	 */
+	@Override
+	protected void recycleChild(View child, int position){
+		mCachedFrames.put(getCacheKey(position), (CoverFrame) child);
+	}
+	
+	/**
+	 * Covers are always measured to coverWidth and coverHeight
+	 */
+	@Override
+	protected boolean hasFixedChildSize(){
+		return true;
+	}
+	
+	/**
+	 * One cover on each side is kept off screen, covers are drawn shifted toward center
+	 */
+	@Override
+	protected int getLayoutEdgeExtent(){
+		return (int) (mCoverWidth * mSpacing);
+	}
 
 
     @Override
 	protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+    	if(!isDrawnInQualityTier(child)) return false;
+    	if(isCulled(canvas, child)){
+    		mCulledCoverCount++;
+    		return false;
+    	}
+    	
+    	if(isHardwareRendering()){
+    		//transformation is already set in view properties
+    		return super.drawChild(canvas, child, drawingTime);
+    	}
+    	
     	canvas.save();
     	
-    	//set matrix to child's transformation
-    	setChildTransformation(child, mMatrix);
+    	//get child's transformation, computed at most once per frame
+    	final Matrix transformation = getChildTransformation(child);
     	
     	//Generate child bitmap 
     	Bitmap bitmap = child.getDrawingCache();
@@ -614,46 +1192,132 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
     	    	
     	    	    
     	//set child transformation on canvas
-		canvas.concat(mMatrix);		
+		canvas.concat(transformation);		
 				
-		final Bitmap rfCache = ((CoverFrame) child).mReflectionCache;
+		final Bitmap rfCache = getQualityTier() < FrameQualityGovernor.TIER_NO_REFLECTIONS ? ((CoverFrame) child).mReflectionCache : null;
 		
-		if(mReflectionBackgroundColor != Color.TRANSPARENT){
+		if(rfCache != null && mReflectionBackgroundColor != Color.TRANSPARENT){
 			final int top = bitmap.getHeight() + mReflectionGap - 2;
 			final float frame = 1.0f;
 			mReflectionPaint.setColor(mReflectionBackgroundColor);
 			canvas.drawRect(frame, top + frame , rfCache.getWidth()-frame, top + rfCache.getHeight() - frame, mReflectionPaint);
 		}
 		
-		mPaint.reset();
-		mPaint.setAntiAlias(true);
-		mPaint.setFilterBitmap(true);
-		
 		//Draw child bitmap with applied transforms
-		canvas.drawBitmap(bitmap, 0.0f, 0.0f, mPaint);
+		canvas.drawBitmap(bitmap, 0.0f, 0.0f, mCoverPaint);
 		
 		//Draw reflection
-		canvas.drawBitmap(rfCache, 0.0f, bitmap.getHeight() - 2 + mReflectionGap, mPaint);
+		if(rfCache != null) canvas.drawBitmap(rfCache, 0.0f, bitmap.getHeight() - 2 + mReflectionGap, mCoverPaint);
 		
 		
 		canvas.restore();		
 		return false;
 	}
     
-    private Bitmap createReflectionBitmap(Bitmap original){
+    /**
+     * Draws mirrored covers of all children into one offscreen layer in drawing order and masks whole layer
+     * by one gradient. Reflections are drawn before covers, so covers are always above reflections.
+     */
+    private void drawReflectionBand(Canvas canvas){
+    	final int count = getChildCount();
+    	if(count == 0) return;
+    	
+    	//all covers are laid out on same line with same size, band starts under unscaled cover and ends under reflection of most scaled one
+    	final View first = getChildAt(0);
+    	final int h = first.getHeight();
+    	final int rh = (int) (h * mReflectionHeight);
+    	final int reflectionTop = h - 2 + mReflectionGap;
+    	final float cy = h / 2f;
+    	final int bandTop = first.getTop() + reflectionTop;
+    	final int bandBottom = first.getTop() + (int) Math.ceil(cy + mMaxScaleFactor * (reflectionTop + rh - cy));
+    	if(rh <= 0 || bandBottom <= bandTop) return;
+    	
+    	if(mBandShader == null || mBandShaderTop != bandTop || mBandShaderBottom != bandBottom){
+    		final int gradientColor = Color.argb(mReflectionOpacity, 0xff, 0xff, 0xff);
+    		mBandShader = new LinearGradient(0, bandTop, 0, bandBottom, gradientColor, 0x00ffffff, TileMode.CLAMP);
+    		mBandShaderTop = bandTop;
+    		mBandShaderBottom = bandBottom;
+    		mBandMaskPaint.setShader(mBandShader);
+    	}
+    	
+    	mBandRect.set(getScrollX(), bandTop, getScrollX() + getWidth(), bandBottom);
+    	final int saveCount = canvas.saveLayer(mBandRect, null, Canvas.ALL_SAVE_FLAG);
+    	
+    	mReflectionPaint.setColor(mReflectionBackgroundColor);
+    	
+    	final boolean hardware = isHardwareRendering();
+    	for(int i=0; i < count; i++){
+    		final View child = getChildAt(getChildDrawingOrder(count, i));
+    		if(!isDrawnInQualityTier(child) || isCulled(canvas, child)) continue;
+    		final Bitmap bitmap = hardware ? null : child.getDrawingCache();
+    		if(!hardware && bitmap == null) continue;
+    		final int w = child.getWidth();
+    		
+    		canvas.save();
+    		canvas.translate(child.getLeft(), child.getTop());
+    		canvas.concat(getChildTransformation(child));
+    		canvas.clipRect(0, reflectionTop, w, reflectionTop + rh);
+    		
+    		if(mReflectionBackgroundColor != Color.TRANSPARENT){
+    			final float frame = 1.0f;
+    			canvas.drawRect(frame, reflectionTop + frame, w - frame, reflectionTop + rh - frame, mReflectionPaint);
+    		}
+    		
+    		//flip rows rh..2*rh of cover upside down under it
+    		canvas.translate(0, reflectionTop + 2*rh);
+    		canvas.scale(1.0f, -1.0f);
+    		if(hardware) drawChildInCoverSpace(canvas, child);
+    		else canvas.drawBitmap(bitmap, 0.0f, 0.0f, mCoverPaint);
+    		canvas.restore();
+    	}
+    	
+    	canvas.drawRect(mBandRect, mBandMaskPaint);
+    	canvas.restoreToCount(saveCount);
+    }
+    
+    /**
+     * Draws child by renderer from its display list or hardware layer, so cover isn't recorded again.
+     * Renderer applies position and view properties of child, canvas in cover space is moved back by their inverse
+     */
+    private void drawChildInCoverSpace(Canvas canvas, View child){
+    	if(!getChildTransformation(child).invert(mInverseTransform)) return;
+    	canvas.concat(mInverseTransform);
+    	canvas.translate(-child.getLeft(), -child.getTop());
+    	super.drawChild(canvas, child, getDrawingTime());
+    }
+    
+    /**
+     * Creates reflection of original bitmap. Reflection bitmap is taken from shared {@link BitmapPool},
+     * bitmap passed as reuse is returned to pool first, so it is handed back again if it has matching size.
+     * @param original cover bitmap
+     * @param reuse previous reflection of this cover or null
+     */
+    private Bitmap createReflectionBitmap(Bitmap original, Bitmap reuse){
     	final int w = original.getWidth();
     	final int h = original.getHeight();
     	final int rh = (int) (h * mReflectionHeight);
     	final int gradientColor = Color.argb(mReflectionOpacity, 0xff, 0xff, 0xff);
     	
-    	final Bitmap reflection = Bitmap.createBitmap(original, 0, rh, w, rh, mReflectionMatrix, false);
+    	final BitmapPool pool = BitmapPool.getDefault();
+    	pool.put(reuse);
+    	final Bitmap reflection = pool.get(w, rh, Bitmap.Config.ARGB_8888);
+    	
+    	//flip rows rh..2*rh of original upside down into reflection
+    	mReflectionCanvas.setBitmap(reflection);
+    	mReflectionCanvas.save();
+    	mReflectionCanvas.concat(mReflectionMatrix);
+    	mReflectionCanvas.translate(0, -2*rh);
+    	mReflectionCanvas.drawBitmap(original, 0, 0, null);
+    	mReflectionCanvas.restore();
     	
-    	final LinearGradient shader = new LinearGradient(0, 0, 0, reflection.getHeight(), gradientColor, 0x00ffffff,TileMode.CLAMP);
+    	if(mReflectionShader == null || mReflectionShaderHeight != rh){
+    		mReflectionShader = new LinearGradient(0, 0, 0, rh, gradientColor, 0x00ffffff,TileMode.CLAMP);
+    		mReflectionShaderHeight = rh;
+    	}
     	mPaint.reset();
-    	mPaint.setShader(shader);
+    	mPaint.setShader(mReflectionShader);
     	mPaint.setXfermode(mXfermode);
    	
-    	mReflectionCanvas.setBitmap(reflection);
     	mReflectionCanvas.drawRect(0, 0, reflection.getWidth(), reflection.getHeight(), mPaint);
     	
     	return reflection;
@@ -671,9 +1335,8 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
     	outRect.right = child.getWidth();
     	outRect.bottom = child.getHeight();
     	
-    	setChildTransformation(child, mTempHit);
         //将matrix的变换动作应用于outRect上
-    	mTempHit.mapRect(outRect);
+    	getChildTransformation(child).mapRect(outRect);
     }
     
     protected void transformChildHitRectangle(View child, RectF outRect, final Matrix transformation){
@@ -685,126 +1348,87 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
     	transformation.mapRect(outRect);
     }
 	
-	private void setChildTransformation(View child, Matrix m){
-		m.reset();		
-		
-//		addChildRotation(child, m);
-		addChildScale(child, m);
-		addChildCircularPathZOffset(child, m);
-		addChildAdjustPosition(child,m);
-		
-		//set coordinate system origin to center of child
-		m.preTranslate(-child.getWidth()/2f, -child.getHeight()/2f);
-		//move back
-		m.postTranslate(child.getWidth()/2f, child.getHeight()/2f);
-		
-	}
-	
-
-	private void addChildCircularPathZOffset(View child, Matrix m){
-		mCamera.save();
-		
-		final float v = getOffsetOnCircle(getChildsCenter(child));
-		final float z = mRadiusInMatrixSpace * v;
-
-		mCamera.translate(0.0f, 0.0f, z);
-		
-		mCamera.getMatrix(mTemp);
-		m.postConcat(mTemp);
-		
-		mCamera.restore();
-	}
-	
-
-	private void addChildScale(View v,Matrix m){
-		final float f = getScaleFactor(getChildsCenter(v));
-		m.postScale(f, f);
-	}
-	
-	private void addChildRotation(View v, Matrix m){
-		mCamera.save();
-		
-		final int c = getChildsCenter(v);
-		mCamera.rotateY(getRotationAngle(c) - getAngleOnCircle(c));
+	/**
+	 * Returns transformation of child for current scroll position. Result is cached in child frame and recomputed only
+	 * when scroll position, child layout, widget size or tuning attributes changed. Returned matrix must not be modified.
+	 */
+	private Matrix getChildTransformation(View child){
+		final CoverFrame frame = (CoverFrame) child;
+		final int scrollX = getScrollX();
 		
-		mCamera.getMatrix(mTemp);
-		m.postConcat(mTemp);
+		if(frame.mTransformGeneration != mTransformGeneration
+				|| frame.mTransformScrollX != scrollX
+				|| frame.mTransformLeft != child.getLeft()
+				|| frame.mTransformWidth != child.getWidth()
+				|| frame.mTransformHeight != child.getHeight()){
+			
+			mGeometry.setViewport(getWidth(), scrollX);
+			setChildTransformation(child, frame.mTransform);
+			frame.mTransformGeneration = mTransformGeneration;
+			frame.mTransformScrollX = scrollX;
+			frame.mTransformLeft = child.getLeft();
+			frame.mTransformWidth = child.getWidth();
+			frame.mTransformHeight = child.getHeight();
+		}
 		
-		mCamera.restore();
+		return frame.mTransform;
 	}
 	
-	private void addChildAdjustPosition(View child, Matrix m) {
-		final int c = getChildsCenter(child);
-
-		final float crp = getClampedRelativePosition(getRelativePosition(c), mAdjustPositionThreshold * getWidgetSizeMultiplier());
-		final float d = mCoverWidth * mAdjustPositionMultiplier * mSpacing * crp * getSpacingMultiplierOnCirlce(c);
-		Log.e("addChildAdjustPosition  "+ crp,"" + d);
-		m.postTranslate(d, 0f);
+	/**
+	 * Sets transformation of every child as its scale and translation properties, used in hardware rendering mode.
+	 * Transformation is uniform scale around cover center followed by horizontal shift, so it maps to properties exactly.
+	 */
+	@SuppressLint("NewApi")
+	private void applyChildrenProperties(){
+		final int count = getChildCount();
+		for(int i=0; i < count; i++){
+			final View child = getChildAt(i);
+			getChildTransformation(child).getValues(mMatrixValues);
+			
+			final float k = mMatrixValues[CoverFlowGeometry.MSCALE_X];
+			final float cx = child.getWidth()/2f;
+			child.setPivotX(cx);
+			child.setPivotY(child.getHeight()/2f);
+			child.setScaleX(k);
+			child.setScaleY(k);
+			child.setTranslationX(mMatrixValues[CoverFlowGeometry.MTRANS_X] - (cx - k*cx));
+		}
 	}
 	
 	/**
-	 * Calculates relative position on screen in range -1 to 1, widgets out of screen can have values ove 1 or -1
-	 * @param pixexPos Absolute position in pixels including scroll offset
-	 * @return relative position
+	 * @return true when covers are drawn by hardware renderer with view properties
 	 */
-	private float getRelativePosition(int pixexPos){
-		final int half = getWidth()/2;
-		final int centerPos = getScrollX() + half;
-
-		return (pixexPos - centerPos)/((float) half);
+	private boolean isHardwareRendering(){
+		return mRenderMode == RENDER_MODE_HARDWARE && android.os.Build.VERSION.SDK_INT >= 11;
 	}
 	
 	/**
-	 * Clamps relative position by threshold, and produces values in range -1 to 1 directly usable for transformation computation
-	 * @param position value int range -1 to 1
-	 * @param threshold always positive value of threshold distance from center in range 0-1
-	 * @return
+	 * Marks cached transformations of all children stale. Call whenever any value used by setChildTransformation changes
 	 */
-	private float getClampedRelativePosition(float position, float threshold){		
-		if(position < 0){
-			if(position < -threshold) return -1f;
-			else return position/threshold;
-		}
-		else{
-			if(position > threshold) return 1;
-			else return position/threshold;
-		}
+	private void invalidateTransformCache(){
+		wakeUp();
+		mTransformGeneration++;
+		updateGeometry();
 	}
 	
-	private float getRotationAngle(int childCenter){
-		return -mMaxRotationAngle * getClampedRelativePosition(getRelativePosition(childCenter), mRotationThreshold * getWidgetSizeMultiplier());
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		invalidateTransformCache();
 	}
 	
-	private float getScaleFactor(int childCenter){
-		return 1 + (mMaxScaleFactor-1) * (1 - Math.abs(getClampedRelativePosition(getRelativePosition(childCenter), mScalingThreshold * getWidgetSizeMultiplier())));
+	private void setChildTransformation(View child, Matrix m){
+		mGeometry.computeCoverMatrix(getChildsCenter(child), child.getWidth(), child.getHeight(), mMatrixValues);
+		m.setValues(mMatrixValues);
 	}
-
+	
 	/**
-	 * Compute offset following path on circle
-	 * @param childCenter
-	 * @return offset from position on unitary circle
+	 * Copies tuning attributes to geometry used for computing cover transformations
 	 */
-	private float getOffsetOnCircle(int childCenter){
-		float x = getRelativePosition(childCenter)/mRadius;
-		if(x < -1.0f) x = -1.0f;
-		if(x > 1.0f) x = 1.0f;
-
-        Logger.showErrorLog("getOffsetOnCircle", x+" float ");
-		return  (float) (1 - Math.sin(Math.acos(x)));
+	private void updateGeometry(){
+		mGeometry.setParams(mSpacing, mScalingThreshold, mAdjustPositionThreshold, mAdjustPositionMultiplier,
+				mMaxScaleFactor, mRadius, mRadiusInMatrixSpace, mTuningWidgetSize, mCoverWidth);
 	}
-	
-	private float getAngleOnCircle(int childCenter){
-		float x = getRelativePosition(childCenter)/mRadius;
-		if(x < -1.0f) x = -1.0f;
-		if(x > 1.0f) x = 1.0f;
-		
-		return (float) (Math.acos(x)/Math.PI*180.0f - 90.0f);
-	}
-	
-	private float getSpacingMultiplierOnCirlce(int childCenter) {
-        float x = getRelativePosition(childCenter) / mRadius;
-        return (float) Math.sin(Math.acos(x));
-    }
 
 	@Override
 	public void computeScroll() {
@@ -820,40 +1444,43 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	    	requestLayout();
 	    }
 	    
-	    if (mTouchState == TOUCH_STATE_ALIGN) {
-	    	if(mAlignScroller.computeScrollOffset()) {
-				if(mAlignScroller.getFinalX() == mAlignScroller.getCurrX()){
-					mAlignScroller.abortAnimation();
-					mTouchState = TOUCH_STATE_RESTING;
-					return;
-				}
-	
-			    int x = mAlignScroller.getCurrX();
-			    scrollTo(x, 0);
-			
-	            postInvalidate();
-	            return;
-	    	}
-	    	else{
-	    		mTouchState = TOUCH_STATE_RESTING;
-	    		return;
-	    	}
-        }
-		
+	    if(isIdle()){ //nothing moves, children don't need relayout
+	    	return;
+	    }
+	    
 		super.computeScroll();		
 	}
 
 	@Override
 	protected boolean checkScrollPosition() {
+		//scroll stopped in frame callback before draw, offset of center cover must be measured at final position
+		layoutOnScroll();
+		computeDrawingOrder();
 		if(mCenterItemOffset != 0){
-			mAlignScroller.startScroll(getScrollX(), 0, mCenterItemOffset, 0, mAlignTime);
+			mAlignScroller.startScroll(getScrollX(), mCenterItemOffset, mAlignTime, getFrameScheduler().now());
 			mTouchState = TOUCH_STATE_ALIGN;
+			getFrameScheduler().postFrameCallback(mAlignFrameCallback);
 			invalidate();
 			return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * Moves align animation to frame time, covers are laid out when frame is drawn
+	 * @return true while animation runs
+	 */
+	private boolean onAlignFrame(long frameTimeNanos){
+		if(mTouchState != TOUCH_STATE_ALIGN || !mAlignScroller.computeScrollOffset(frameTimeNanos)) return false;
+		
+		scrollTo(mAlignScroller.getCurrX(), 0);
+		if(mAlignScroller.isFinished()){
+			mTouchState = TOUCH_STATE_RESTING;
+			return false;
+		}
+		return true;
+	}
+	
 	private void getScrolledTransformedChildRectangle(View child, RectF r){
         //将View移动到某个长方形区域内
 		transformChildHitRectangle(child, r);
@@ -865,6 +1492,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	
 	@Override
 	public boolean dispatchTouchEvent(MotionEvent ev) {
+		wakeUp();
 		final int action = ev.getAction();
         final float xf = ev.getX();
         final float yf = ev.getY();
@@ -1010,7 +1638,22 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 * @param size number of cached covers
 	 */
 	public void trimChacheSize(int size){
-		mCachedFrames.trimToSize(size);
+		mCachedFrames.trimToCount(size);
+	}
+	
+	/**
+	 * Change memory budget of cover cache, covers over budget are released immediately
+	 * @param bytes budget in bytes
+	 */
+	public void setMaxCacheBytes(long bytes){
+		mCachedFrames.resize(bytes);
+	}
+	
+	/**
+	 * @return bytes held by cached covers
+	 */
+	public long getCacheBytes(){
+		return mCachedFrames.size();
 	}
 	
 	/**
@@ -1028,6 +1671,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	public void setSpacing(float spacing) {
 		this.mSpacing = spacing;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1045,6 +1689,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	public void setCoverWidth(int coverWidth) {
 		if(coverWidth % 2 == 1) coverWidth--;
 		this.mCoverWidth = coverWidth;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1061,6 +1706,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	public void setCoverHeight(int coverHeight) {
 		this.mCoverHeight = coverHeight;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1070,6 +1716,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	public void setRotationTreshold(float rotationThreshold) {
 		this.mRotationThreshold = rotationThreshold;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1079,6 +1726,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	public void setScalingThreshold(float scalingThreshold) {
 		this.mScalingThreshold = scalingThreshold;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1089,6 +1737,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	public void setAdjustPositionThreshold(float adjustPositionThreshold) {
 		this.mAdjustPositionThreshold = adjustPositionThreshold;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1097,6 +1746,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 */
 	public void setAdjustPositionMultiplier(float adjustPositionMultiplier) {
 		this.mAdjustPositionMultiplier = adjustPositionMultiplier;
+		invalidateTransformCache();
 	}
 
 	/**
@@ -1193,6 +1843,72 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 //		this.mReflectionBackgroundColor = reflectionBackgroundColor;
 //	}
 
+	/**
+	 * When enabled, quality of rendering is lowered while frames take longer than budget. Thresholds can be tuned on {@link #getQualityGovernor()}
+	 * @param adaptiveQuality true to enable quality governor
+	 */
+	public void setAdaptiveQuality(boolean adaptiveQuality) {
+		this.mAdaptiveQuality = adaptiveQuality;
+		mQualityGovernor.reset();
+		wakeUp();
+		invalidate();
+	}
+
+	public boolean isAdaptiveQuality() {
+		return mAdaptiveQuality;
+	}
+
+	/**
+	 * @return governor choosing quality tier, use it to configure frame budget and thresholds
+	 */
+	public FrameQualityGovernor getQualityGovernor() {
+		return mQualityGovernor;
+	}
+
+	/**
+	 * @return quality tier used for drawing, one of FrameQualityGovernor.TIER_ constants
+	 */
+	public int getQualityTier() {
+		return mAdaptiveQuality ? mQualityGovernor.getTier() : FrameQualityGovernor.TIER_FULL;
+	}
+
+	/**
+	 * @param reducedSideCovers how many covers on each side of center are drawn in lowest quality tier
+	 */
+	public void setReducedSideCovers(int reducedSideCovers) {
+		if(reducedSideCovers < 0) throw new IllegalArgumentException("Number of covers must not be negative");
+		this.mReducedSideCovers = reducedSideCovers;
+	}
+
+	/**
+	 * @return {@link #RENDER_MODE_SOFTWARE} or {@link #RENDER_MODE_HARDWARE} as set in xml. Hardware mode is used only on API 11 and newer
+	 */
+	public int getRenderMode() {
+		return mRenderMode;
+	}
+
+	/**
+	 * @return {@link #REFLECTION_MODE_PER_COVER} or {@link #REFLECTION_MODE_BAND}
+	 */
+	public int getReflectionMode() {
+		return mReflectionMode;
+	}
+
+	/**
+	 * Sets how are reflections drawn. {@link #REFLECTION_MODE_BAND} does not allocate reflection bitmap for every cover,
+	 * all reflections are drawn from cover bitmaps into one layer masked by one shared gradient
+	 * In hardware rendering mode reflections are always drawn as band, mirrored from display lists of covers
+	 * @param reflectionMode {@link #REFLECTION_MODE_PER_COVER} or {@link #REFLECTION_MODE_BAND}
+	 */
+	public void setReflectionMode(int reflectionMode) {
+		if(reflectionMode != REFLECTION_MODE_PER_COVER && reflectionMode != REFLECTION_MODE_BAND){
+			throw new IllegalArgumentException("Unknown reflection mode " + reflectionMode);
+		}
+		this.mReflectionMode = reflectionMode;
+		wakeUp();
+		invalidate();
+	}
+
 	@Override
 	/**
 	 * Get position of center item in adapter.
@@ -1213,6 +1929,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	@Override
 	public void scrollToPosition(int position) {
 		if(mAdapter == null || mAdapter.getCount() == 0) throw new IllegalStateException("You are trying to scroll container with no adapter set. Set adapter first.");	
+		wakeUp();
 		
 		if(mLastCenterItemIndex != -1){
 			final int lastCenterItemPosition = (mFirstItemPosition + mLastCenterItemIndex) % mAdapter.getCount();
@@ -1228,6 +1945,33 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 		invalidate();
 	}
 
+	/**
+	 * Shows item on position in center immediately, without animation. Layout is anchored on target item,
+	 * only visible covers are created and scroll offset is reset to zero, so cost doesn't depend
+	 * on adapter size or on distance of jump. Covers which were on screen stay in cover cache
+	 */
+	public void jumpToPosition(int position){
+		if(mAdapter == null || mAdapter.getCount() == 0) throw new IllegalStateException("You are trying to scroll container with no adapter set. Set adapter first.");
+		if(position < 0 || position >= mAdapter.getCount()) throw new IndexOutOfBoundsException("Position must be in bounds of adapter values count");
+		wakeUp();
+		
+		mScroller.forceFinished(true);
+		mAlignScroller.forceFinished(true);
+		mTouchState = TOUCH_STATE_RESTING;
+		mScrollToPositionOnNextInvalidate = -1;
+		
+		if(getChildCount() == 0 || getWidth() == 0){
+			mJumpToPositionOnLayout = position;
+			requestLayout();
+			return;
+		}
+		
+		scrollTo(0, 0);
+		reanchor(position, (getWidth() - mCoverWidth) / 2);
+		computeDrawingOrder();
+		invalidate();
+	}
+
     /**
      * sets listener for center item position
      * @param onScrollPositionListener
@@ -1236,6 +1980,76 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
         mOnScrollPositionListener = onScrollPositionListener;
     }
 
+    /**
+     * sets listener for position where fling stops, it is known as soon as fling starts
+     * @param onFlingTargetListener
+     */
+    public void setOnFlingTargetListener(OnFlingTargetListener onFlingTargetListener){
+        mOnFlingTargetListener = onFlingTargetListener;
+    }
+
+	/**
+	 * @return adapter position of cover which will be in center when running fling stops, -1 if fling doesn't run
+	 */
+	public int getFlingTargetPosition(){
+		return mTouchState == TOUCH_STATE_FLING && !mScroller.isFinished() ? mFlingTargetPosition : -1;
+	}
+
+	/**
+	 * Moves end of fling so cover nearest to where it would stop lands exactly in center, then no align animation
+	 * is needed after fling. Covers which will be visible there are prefetched right away
+	 */
+	@Override
+	protected int snapFlingTarget(int finalX) {
+		final int childCount = getChildCount();
+		if(mAdapter == null || mAdapter.getCount() == 0 || childCount == 0 || getWidth() == 0 || isSrollingDisabled) return finalX;
+		
+		//measure from center cover, its neighbours were laid out with actual pitch
+		final int ref = mLastCenterItemIndex != -1 && mLastCenterItemIndex < childCount ? mLastCenterItemIndex : 0;
+		final int pitch;
+		if(childCount > 1){
+			final int neighbour = ref + 1 < childCount ? ref + 1 : ref - 1;
+			pitch = Math.abs(getChildsCenter(neighbour) - getChildsCenter(ref));
+		}
+		else{
+			final View child = getChildAt(ref);
+			pitch = child.getWidth() + ((LoopLayoutParams) child.getLayoutParams()).rightMargin;
+		}
+		if(pitch <= 0) return finalX;
+		
+		final int refCenter = getChildsCenter(ref);
+		final int steps = Math.round((float) (finalX + getWidth()/2 - refCenter) / pitch);
+		final int count = mAdapter.getCount();
+		mFlingTargetPosition = ((mFirstItemPosition + ref + steps) % count + count) % count;
+		
+		if(mOnFlingTargetListener != null) mOnFlingTargetListener.onFlingTarget(mFlingTargetPosition);
+		prefetchAround(mFlingTargetPosition, getWidth() / pitch / 2 + 1);
+		
+		return refCenter + steps * pitch - getWidth()/2;
+	}
+
+	/**
+	 * Puts cover of frame to scrap heap and recycles frame
+	 */
+	private void scrapCoverFrame(CoverFrame cf){
+		if(cf.getChildCount() == 1){
+			mScrapHeap.put(cf.getChildAt(0), cf.mViewType);
+			recycleCoverFrame(cf); // removes children, must be after caching children
+		}
+	}
+	
+	/**
+	 * Covers of removed frames go to scrap heap, so refill can reuse them
+	 */
+	@Override
+	public void removeAllViewsInLayout() {
+		for(int i = 0; i < getChildCount(); i++){
+			scrapCoverFrame((CoverFrame) getChildAt(i));
+		}
+		mDrawingOrderValid = false;
+		super.removeAllViewsInLayout();
+	}
+	
 	/**
 	 * removes children, must be after caching children
 	 * @param cf
@@ -1264,6 +2078,7 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	 * Good place to release resources is in activitys onStop.
 	 */
 	public void releaseAllMemoryResources(){
+		wakeUp();
 		mLastItemPosition = mFirstItemPosition;
 		mLastItemPosition--;
 		
@@ -1277,9 +2092,123 @@ public class FeatureCoverFlow extends EndlessLoopAdapterContainer implements Vie
 	}
 
 	@Override
-	public boolean onPreDraw() { //when child view is about to be drawn we invalidate whole container
-				
-		if(!mInvalidated){ //this is hack, no idea now is possible that this works, but fixes problem where not all area was redrawn
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		registerPreDrawListener();
+		if(mTrimRegistration == null) mTrimRegistration = TrimMemoryHelper.register(getContext(), this);
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		unregisterPreDrawListener();
+		getFrameScheduler().removeFrameCallback(mAlignFrameCallback);
+		if(mTouchState == TOUCH_STATE_ALIGN){
+			mAlignScroller.forceFinished(true);
+			mTouchState = TOUCH_STATE_RESTING;
+		}
+		TrimMemoryHelper.unregister(getContext(), mTrimRegistration);
+		mTrimRegistration = null;
+		super.onDetachedFromWindow();
+	}
+	
+	/**
+	 * Sheds memory by levels of ComponentCallbacks2. Each level releases also everything lower levels do:
+	 * reflections from running moderate, cached off screen covers from running low, recycled frames and views
+	 * from running critical, drawing caches of visible covers except center one when ui is hidden.
+	 * Shared {@link BitmapPool} is trimmed too. Everything released is rebuilt lazily when it is drawn again.
+	 */
+	@Override
+	public void onTrimMemory(int level) {
+		mTrimReleasedBytes = 0;
+		mTrimming = true;
+		try{
+			if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE){
+				for(int i = 0; i < getChildCount(); i++){
+					mTrimReleasedBytes += ((CoverFrame) getChildAt(i)).releaseReflection();
+				}
+			}
+			
+			if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW){
+				mCachedFrames.evictAll();
+			}
+			
+			if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL){
+				for(WeakReference<CoverFrame> ref : mRecycledCoverFrames){
+					final CoverFrame frame = ref.get();
+					if(frame != null) mTrimReleasedBytes += frame.releaseCaches();
+				}
+				mRecycledCoverFrames.clear();
+				mScrapHeap.clear();
+			}
+			
+			if(level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN){
+				for(int i = 0; i < getChildCount(); i++){
+					if(i != mLastCenterItemIndex) mTrimReleasedBytes += ((CoverFrame) getChildAt(i)).releaseCaches();
+				}
+			}
+		}
+		finally{
+			mTrimming = false;
+		}
+		
+		mTrimReleasedBytes += BitmapPool.getDefault().trimMemory(level);
+		
+		mLastTrimReleasedBytes = mTrimReleasedBytes;
+		mTotalTrimReleasedBytes += mTrimReleasedBytes;
+		mTrimEventCount++;
+	}
+	
+	/**
+	 * @return bytes of bitmaps released by last memory trim event
+	 */
+	public long getLastTrimReleasedBytes(){
+		return mLastTrimReleasedBytes;
+	}
+	
+	/**
+	 * @return bytes of bitmaps released by all memory trim events
+	 */
+	public long getTotalTrimReleasedBytes(){
+		return mTotalTrimReleasedBytes;
+	}
+	
+	/**
+	 * @return number of memory trim events received
+	 */
+	public int getTrimEventCount(){
+		return mTrimEventCount;
+	}
+
+	/**
+	 * Registers this widget as pre draw listener of its window exactly once, covers do not register own listeners
+	 */
+	private void registerPreDrawListener(){
+		if(mPreDrawObserver != null && mPreDrawObserver.isAlive()) return;
+		
+		mPreDrawObserver = getViewTreeObserver();
+		mPreDrawObserver.addOnPreDrawListener(this);
+	}
+
+	private void unregisterPreDrawListener(){
+		if(mPreDrawObserver == null) return;
+		
+		if(mPreDrawObserver.isAlive()) mPreDrawObserver.removeOnPreDrawListener(this);
+		else getViewTreeObserver().removeOnPreDrawListener(this);
+		mPreDrawObserver = null;
+	}
+
+	/**
+	 * @return how many times was onPreDraw of this widget called
+	 */
+	int getPreDrawCallCount(){
+		return mPreDrawCallCount;
+	}
+
+	@Override
+	public boolean onPreDraw() { //when cover is about to be redrawn we invalidate whole container
+		mPreDrawCallCount++;
+		
+		if(mCoversDirty && !mInvalidated){ //this is hack, no idea now is possible that this works, but fixes problem where not all area was redrawn
 			mInvalidated = true;
 			invalidate();
 			return false;
@@ -0,0 +1,178 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+/**
+ * Chooses rendering quality tier of {@link FeatureCoverFlow} from measured frame durations.
+ * When smoothed frame time stays over budget, quality steps down one tier, when it stays under budget long enough, it steps back up.
+ * Pure java, timestamps are passed by caller.
+ */
+public class FrameQualityGovernor {
+	/** Everything drawn with best quality */
+	public static final int TIER_FULL = 0;
+	/** Bitmaps are drawn without filtering and antialiasing */
+	public static final int TIER_NO_FILTERING = 1;
+	/** Reflections are neither drawn nor rebuilt */
+	public static final int TIER_NO_REFLECTIONS = 2;
+	/** Only covers near center are drawn */
+	public static final int TIER_REDUCED_COVERS = 3;
+
+	public static final long DEFAULT_FRAME_BUDGET_NANOS = 16666667L;
+
+	/**
+	 * Frames further apart than this are not measured, widget probably was not animating between them
+	 */
+	private static final long MAX_MEASURED_FRAME_NANOS = 250000000L;
+
+	private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+	/** Quality steps down when smoothed frame time is over budget multiplied by this value */
+	private float mDowngradeThreshold = 1.2f;
+
+	/** Quality steps up when smoothed frame time is under budget multiplied by this value */
+	private float mUpgradeThreshold = 0.8f;
+
+	/** How many consecutive slow frames are needed to step down */
+	private int mDowngradeFrames = 5;
+
+	/** How many consecutive fast frames are needed to step up */
+	private int mUpgradeFrames = 30;
+
+	/** Weight of newest frame in exponential moving average of frame time */
+	private float mSmoothing = 0.25f;
+
+	private int mMaxTier = TIER_REDUCED_COVERS;
+
+	private int mTier = TIER_FULL;
+	private long mLastFrameNanos = -1;
+	private float mAverageFrameNanos;
+	private int mSlowFrames;
+	private int mFastFrames;
+
+	/**
+	 * Report start of frame
+	 * @param frameTimeNanos monotonic timestamp, for example System.nanoTime()
+	 * @return true if quality tier changed
+	 */
+	public boolean onFrame(long frameTimeNanos){
+		final long last = mLastFrameNanos;
+		mLastFrameNanos = frameTimeNanos;
+		if(last == -1) return false;
+
+		final long duration = frameTimeNanos - last;
+		if(duration <= 0 || duration > MAX_MEASURED_FRAME_NANOS) return false;
+
+		if(mAverageFrameNanos == 0) mAverageFrameNanos = duration;
+		else mAverageFrameNanos += mSmoothing * (duration - mAverageFrameNanos);
+
+		if(mAverageFrameNanos > mFrameBudgetNanos * mDowngradeThreshold){
+			mFastFrames = 0;
+			if(++mSlowFrames >= mDowngradeFrames && mTier < mMaxTier){
+				mTier++;
+				mSlowFrames = 0;
+				//measure new tier from scratch
+				mAverageFrameNanos = 0;
+				return true;
+			}
+		}
+		else if(mAverageFrameNanos < mFrameBudgetNanos * mUpgradeThreshold){
+			mSlowFrames = 0;
+			if(++mFastFrames >= mUpgradeFrames && mTier > TIER_FULL){
+				mTier--;
+				mFastFrames = 0;
+				mAverageFrameNanos = 0;
+				return true;
+			}
+		}
+		else{
+			mSlowFrames = 0;
+			mFastFrames = 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Forget measured frames, next frame is not measured. Call when animation stops
+	 */
+	public void pause(){
+		mLastFrameNanos = -1;
+		mSlowFrames = 0;
+		mFastFrames = 0;
+	}
+
+	/**
+	 * Forget all measurements and return to full quality
+	 */
+	public void reset(){
+		pause();
+		mAverageFrameNanos = 0;
+		mTier = TIER_FULL;
+	}
+
+	/**
+	 * @return current tier, one of TIER_ constants
+	 */
+	public int getTier(){
+		return mTier;
+	}
+
+	/**
+	 * @return smoothed frame duration in nanoseconds, 0 if not measured yet
+	 */
+	public long getAverageFrameNanos(){
+		return (long) mAverageFrameNanos;
+	}
+
+	public long getFrameBudgetNanos(){
+		return mFrameBudgetNanos;
+	}
+
+	/**
+	 * @param frameBudgetNanos target duration of one frame
+	 */
+	public void setFrameBudgetNanos(long frameBudgetNanos){
+		if(frameBudgetNanos <= 0) throw new IllegalArgumentException("Frame budget must be positive");
+		mFrameBudgetNanos = frameBudgetNanos;
+	}
+
+	/**
+	 * @param downgradeThreshold quality steps down when frames take longer than budget multiplied by this value
+	 * @param upgradeThreshold quality steps up when frames take less than budget multiplied by this value, must be lower than downgradeThreshold
+	 */
+	public void setThresholds(float downgradeThreshold, float upgradeThreshold){
+		if(upgradeThreshold <= 0 || upgradeThreshold >= downgradeThreshold){
+			throw new IllegalArgumentException("Upgrade threshold must be positive and lower than downgrade threshold");
+		}
+		mDowngradeThreshold = downgradeThreshold;
+		mUpgradeThreshold = upgradeThreshold;
+	}
+
+	/**
+	 * @param downgradeFrames consecutive slow frames needed to step quality down
+	 * @param upgradeFrames consecutive fast frames needed to step quality up
+	 */
+	public void setHysteresis(int downgradeFrames, int upgradeFrames){
+		if(downgradeFrames < 1 || upgradeFrames < 1) throw new IllegalArgumentException("Frame counts must be positive");
+		mDowngradeFrames = downgradeFrames;
+		mUpgradeFrames = upgradeFrames;
+	}
+
+	/**
+	 * @param smoothing weight of newest frame in moving average, 0-1
+	 */
+	public void setSmoothing(float smoothing){
+		if(smoothing <= 0 || smoothing > 1) throw new IllegalArgumentException("Smoothing must be in range (0,1]");
+		mSmoothing = smoothing;
+	}
+
+	/**
+	 * @param maxTier lowest quality governor may step down to, TIER_FULL disables governor
+	 */
+	public void setMaxTier(int maxTier){
+		if(maxTier < TIER_FULL || maxTier > TIER_REDUCED_COVERS) throw new IllegalArgumentException("Unknown tier " + maxTier);
+		mMaxTier = maxTier;
+		if(mTier > maxTier) mTier = maxTier;
+	}
+
+	public int getMaxTier(){
+		return mMaxTier;
+	}
+}
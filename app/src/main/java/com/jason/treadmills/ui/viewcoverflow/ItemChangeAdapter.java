@@ -0,0 +1,67 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import android.widget.BaseAdapter;
+
+import com.jason.treadmills.ui.viewcoverflow.interfaces.IItemChangeNotifier;
+import com.jason.treadmills.ui.viewcoverflow.interfaces.IItemChangeObserver;
+
+import java.util.ArrayList;
+
+/**
+ * Adapter with item level change notifications. Every notification is followed by notifyDataSetChanged,
+ * so observers which don't understand item changes are still notified. Containers registered as
+ * {@link IItemChangeObserver} update only affected items.
+ */
+public abstract class ItemChangeAdapter extends BaseAdapter implements IItemChangeNotifier {
+	private final ArrayList<IItemChangeObserver> mItemChangeObservers = new ArrayList<IItemChangeObserver>();
+
+	@Override
+	public void registerItemChangeObserver(IItemChangeObserver observer){
+		if(!mItemChangeObservers.contains(observer)) mItemChangeObservers.add(observer);
+	}
+
+	@Override
+	public void unregisterItemChangeObserver(IItemChangeObserver observer){
+		mItemChangeObservers.remove(observer);
+	}
+
+	public void notifyItemChanged(int position){
+		notifyItemRangeChanged(position, 1);
+	}
+
+	public void notifyItemRangeChanged(int positionStart, int itemCount){
+		for(int i = mItemChangeObservers.size() - 1; i >= 0; i--){
+			mItemChangeObservers.get(i).onItemRangeChanged(positionStart, itemCount);
+		}
+		notifyDataSetChanged();
+	}
+
+	public void notifyItemInserted(int position){
+		notifyItemRangeInserted(position, 1);
+	}
+
+	public void notifyItemRangeInserted(int positionStart, int itemCount){
+		for(int i = mItemChangeObservers.size() - 1; i >= 0; i--){
+			mItemChangeObservers.get(i).onItemRangeInserted(positionStart, itemCount);
+		}
+		notifyDataSetChanged();
+	}
+
+	public void notifyItemRemoved(int position){
+		notifyItemRangeRemoved(position, 1);
+	}
+
+	public void notifyItemRangeRemoved(int positionStart, int itemCount){
+		for(int i = mItemChangeObservers.size() - 1; i >= 0; i--){
+			mItemChangeObservers.get(i).onItemRangeRemoved(positionStart, itemCount);
+		}
+		notifyDataSetChanged();
+	}
+
+	public void notifyItemMoved(int fromPosition, int toPosition){
+		for(int i = mItemChangeObservers.size() - 1; i >= 0; i--){
+			mItemChangeObservers.get(i).onItemMoved(fromPosition, toPosition);
+		}
+		notifyDataSetChanged();
+	}
+}
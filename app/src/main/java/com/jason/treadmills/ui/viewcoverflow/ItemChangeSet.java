@@ -0,0 +1,214 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+/**
+ * Item level adapter changes collected between two layout passes. Operations are kept in order of notification,
+ * positions of every operation are relative to state after previous ones. Adjacent operations of same type are merged.
+ * Pure java, positions of old items are mapped to new ones without touching views.
+ */
+public class ItemChangeSet {
+	public static final int OP_CHANGE = 0;
+	public static final int OP_INSERT = 1;
+	public static final int OP_REMOVE = 2;
+	public static final int OP_MOVE = 3;
+
+	/** Returned by {@link #map(int)} for positions of removed items */
+	public static final int REMOVED = -1;
+
+	/** When more operations are notified, set is treated as overflowed and container reloads everything */
+	public static final int MAX_OPS = 32;
+
+	private final int[] mTypes = new int[MAX_OPS];
+	/** Start of range, or source position of move */
+	private final int[] mStarts = new int[MAX_OPS];
+	/** Length of range, or target position of move */
+	private final int[] mCounts = new int[MAX_OPS];
+	private int mOpCount;
+	private boolean mOverflow;
+	private boolean mStructural;
+	private int mCountDelta;
+
+	public void addChanged(int positionStart, int itemCount){
+		if(itemCount <= 0) return;
+		final int last = mOpCount - 1;
+		if(last >= 0 && mTypes[last] == OP_CHANGE){
+			final int s = mStarts[last];
+			final int e = s + mCounts[last];
+			if(positionStart <= e && positionStart + itemCount >= s){
+				mStarts[last] = Math.min(s, positionStart);
+				mCounts[last] = Math.max(e, positionStart + itemCount) - mStarts[last];
+				return;
+			}
+		}
+		addOp(OP_CHANGE, positionStart, itemCount);
+	}
+
+	public void addInserted(int positionStart, int itemCount){
+		if(itemCount <= 0) return;
+		mStructural = true;
+		mCountDelta += itemCount;
+		final int last = mOpCount - 1;
+		if(last >= 0 && mTypes[last] == OP_INSERT
+				&& positionStart >= mStarts[last] && positionStart <= mStarts[last] + mCounts[last]){
+			mCounts[last] += itemCount;
+			return;
+		}
+		addOp(OP_INSERT, positionStart, itemCount);
+	}
+
+	public void addRemoved(int positionStart, int itemCount){
+		if(itemCount <= 0) return;
+		mStructural = true;
+		mCountDelta -= itemCount;
+		final int last = mOpCount - 1;
+		if(last >= 0 && mTypes[last] == OP_REMOVE){
+			if(positionStart == mStarts[last]){
+				mCounts[last] += itemCount;
+				return;
+			}
+			if(positionStart + itemCount == mStarts[last]){
+				mStarts[last] = positionStart;
+				mCounts[last] += itemCount;
+				return;
+			}
+		}
+		addOp(OP_REMOVE, positionStart, itemCount);
+	}
+
+	public void addMoved(int fromPosition, int toPosition){
+		if(fromPosition == toPosition) return;
+		mStructural = true;
+		addOp(OP_MOVE, fromPosition, toPosition);
+	}
+
+	private void addOp(int type, int start, int count){
+		if(mOpCount == MAX_OPS){
+			mOverflow = true;
+			return;
+		}
+		mTypes[mOpCount] = type;
+		mStarts[mOpCount] = start;
+		mCounts[mOpCount] = count;
+		mOpCount++;
+	}
+
+	/**
+	 * @return position of item after all operations, or {@link #REMOVED}
+	 */
+	public int map(int oldPosition){
+		int p = oldPosition;
+		for(int i = 0; i < mOpCount; i++){
+			final int s = mStarts[i];
+			final int c = mCounts[i];
+			switch(mTypes[i]){
+			case OP_INSERT:
+				if(p >= s) p += c;
+				break;
+			case OP_REMOVE:
+				if(p >= s + c) p -= c;
+				else if(p >= s) return REMOVED;
+				break;
+			case OP_MOVE:
+				//c is target position
+				if(p == s) p = c;
+				else if(s < c && p > s && p <= c) p--;
+				else if(s > c && p >= c && p < s) p++;
+				break;
+			default:
+				break;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * @return true if item on old position was changed by any operation, false also for removed items
+	 */
+	public boolean isChanged(int oldPosition){
+		int p = oldPosition;
+		boolean changed = false;
+		for(int i = 0; i < mOpCount; i++){
+			final int s = mStarts[i];
+			final int c = mCounts[i];
+			switch(mTypes[i]){
+			case OP_CHANGE:
+				if(p >= s && p < s + c) changed = true;
+				break;
+			case OP_INSERT:
+				if(p >= s) p += c;
+				break;
+			case OP_REMOVE:
+				if(p >= s + c) p -= c;
+				else if(p >= s) return false;
+				break;
+			case OP_MOVE:
+				if(p == s) p = c;
+				else if(s < c && p > s && p <= c) p--;
+				else if(s > c && p >= c && p < s) p++;
+				break;
+			default:
+				break;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return true if there are no pending operations
+	 */
+	public boolean isEmpty(){
+		return mOpCount == 0 && !mOverflow;
+	}
+
+	/**
+	 * @return true if items were inserted, removed or moved, positions of existing items may differ
+	 */
+	public boolean isStructural(){
+		return mStructural;
+	}
+
+	/**
+	 * @return true if too many operations were notified to track them, everything has to be reloaded
+	 */
+	public boolean isOverflow(){
+		return mOverflow;
+	}
+
+	/**
+	 * @return number of inserted items minus number of removed items
+	 */
+	public int getCountDelta(){
+		return mCountDelta;
+	}
+
+	public int getOpCount(){
+		return mOpCount;
+	}
+
+	/**
+	 * @return one of OP_ constants
+	 */
+	public int getOpType(int index){
+		return mTypes[index];
+	}
+
+	/**
+	 * @return start of range, or source position of move
+	 */
+	public int getOpStart(int index){
+		return mStarts[index];
+	}
+
+	/**
+	 * @return length of range, or target position of move
+	 */
+	public int getOpItemCount(int index){
+		return mCounts[index];
+	}
+
+	public void clear(){
+		mOpCount = 0;
+		mOverflow = false;
+		mStructural = false;
+		mCountDelta = 0;
+	}
+}
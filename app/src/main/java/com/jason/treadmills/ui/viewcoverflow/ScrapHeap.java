@@ -0,0 +1,135 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Views removed from {@link EndlessLoopAdapterContainer}, kept by adapter view type so they can be offered as convertView
+ * for items of the same type only. Views are held strongly and every type keeps at most configured number of views.
+ */
+public class ScrapHeap {
+	public static final int DEFAULT_MAX_VIEWS_PER_TYPE = 8;
+
+	private ArrayList<View>[] mScrapViews;
+	private int mMaxViewsPerType = DEFAULT_MAX_VIEWS_PER_TYPE;
+	private int mSize;
+
+	private int mHitCount;
+	private int mMissCount;
+	private int mEvictionCount;
+
+	public ScrapHeap() {
+		setViewTypeCount(1);
+	}
+
+	/**
+	 * Prepare lists for view types of new adapter, all scrap views are dropped
+	 * @param viewTypeCount value of Adapter.getViewTypeCount()
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void setViewTypeCount(int viewTypeCount){
+		if(viewTypeCount < 1) throw new IllegalArgumentException("Can't have a viewTypeCount < 1");
+
+		mScrapViews = new ArrayList[viewTypeCount];
+		for(int i = 0; i < viewTypeCount; i++){
+			mScrapViews[i] = new ArrayList<View>(mMaxViewsPerType);
+		}
+		mSize = 0;
+	}
+
+	/**
+	 * @param maxViewsPerType how many views of one type are kept, views over limit are dropped immediately
+	 */
+	public void setMaxViewsPerType(int maxViewsPerType){
+		if(maxViewsPerType < 0) throw new IllegalArgumentException("maxViewsPerType < 0");
+
+		mMaxViewsPerType = maxViewsPerType;
+		for(ArrayList<View> scrap : mScrapViews){
+			while(scrap.size() > maxViewsPerType){
+				scrap.remove(scrap.size() - 1);
+				mSize--;
+				mEvictionCount++;
+			}
+		}
+	}
+
+	public int getMaxViewsPerType(){
+		return mMaxViewsPerType;
+	}
+
+	/**
+	 * Offer view for reuse
+	 * @param viewType adapter type of view, views of ignored or unknown types are not kept
+	 * @return true if view was kept
+	 */
+	public boolean put(View view, int viewType){
+		if(viewType < 0 || viewType >= mScrapViews.length) return false;
+
+		final ArrayList<View> scrap = mScrapViews[viewType];
+		if(scrap.size() >= mMaxViewsPerType){
+			mEvictionCount++;
+			return false;
+		}
+		scrap.add(view);
+		mSize++;
+		return true;
+	}
+
+	/**
+	 * @return view of given type, which is removed from heap, or null
+	 */
+	public View get(int viewType){
+		if(viewType < 0 || viewType >= mScrapViews.length){
+			mMissCount++;
+			return null;
+		}
+
+		final ArrayList<View> scrap = mScrapViews[viewType];
+		final int size = scrap.size();
+		if(size == 0){
+			mMissCount++;
+			return null;
+		}
+		mHitCount++;
+		mSize--;
+		return scrap.remove(size - 1);
+	}
+
+	/**
+	 * Drop all views
+	 */
+	public void clear(){
+		for(ArrayList<View> scrap : mScrapViews){
+			scrap.clear();
+		}
+		mSize = 0;
+	}
+
+	/**
+	 * @return number of views of all types
+	 */
+	public int size(){
+		return mSize;
+	}
+
+	public int getHitCount(){
+		return mHitCount;
+	}
+
+	public int getMissCount(){
+		return mMissCount;
+	}
+
+	/**
+	 * @return number of views which were dropped because their type was full
+	 */
+	public int getEvictionCount(){
+		return mEvictionCount;
+	}
+
+	@Override
+	public String toString() {
+		return "ScrapHeap[size=" + mSize + ",hits=" + mHitCount + ",misses=" + mMissCount + ",evictions=" + mEvictionCount + "]";
+	}
+}
@@ -0,0 +1,218 @@
+package com.jason.treadmills.ui.viewcoverflow;
+
+/**
+ * Horizontal scroll animation evaluated for explicit frame timestamps, so each frame computes position exactly once
+ * from vsync time. Curves are those of platform android.widget.Scroller, fling follows its deceleration spline
+ * and programmatic scroll its viscous fluid interpolation, so distance and feel of fling stay as they were.
+ * Pure java, used from one thread only.
+ */
+public class ScrollAnimator {
+	private static final float GRAVITY_EARTH = 9.80665f;
+	private static final float INCHES_PER_METER = 39.37f;
+	/** Tuning of platform Scroller */
+	private static final float PHYSICAL_COEFF_TUNING = 0.84f;
+	private static final float DEFAULT_FRICTION = 0.015f;
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private static final float DECELERATION_RATE = (float) (Math.log(0.78) / Math.log(0.9));
+	private static final float INFLEXION = 0.35f;
+	private static final float START_TENSION = 0.5f;
+	private static final float END_TENSION = 1.0f;
+	private static final float P1 = START_TENSION * INFLEXION;
+	private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+
+	/** Fraction of fling distance travelled at fractions of fling duration */
+	private static final int NB_SAMPLES = 100;
+	private static final float[] SPLINE_POSITION = new float[NB_SAMPLES + 1];
+
+	private static final float VISCOUS_FLUID_SCALE = 8.0f;
+	private static final float VISCOUS_FLUID_NORMALIZE;
+	private static final float VISCOUS_FLUID_OFFSET;
+
+	static {
+		float xMin = 0.0f;
+		for(int i = 0; i < NB_SAMPLES; i++){
+			final float alpha = (float) i / NB_SAMPLES;
+			float xMax = 1.0f;
+			float x, tx, coef;
+			while(true){
+				x = xMin + (xMax - xMin) / 2.0f;
+				coef = 3.0f * x * (1.0f - x);
+				tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+				if(Math.abs(tx - alpha) < 1E-5) break;
+				if(tx > alpha) xMax = x;
+				else xMin = x;
+			}
+			SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+		}
+		SPLINE_POSITION[NB_SAMPLES] = 1.0f;
+
+		//viscous fluid must reach 1 at the end and be continuous
+		VISCOUS_FLUID_NORMALIZE = 1.0f / viscousFluid(1.0f, 1.0f, 0);
+		VISCOUS_FLUID_OFFSET = 1.0f - VISCOUS_FLUID_NORMALIZE * viscousFluid(1.0f, 1.0f, 0);
+	}
+
+	/** Friction multiplied by physical coefficient of platform Scroller, in pixels per second squared */
+	private final float mDeceleration;
+
+	private boolean mFinished = true;
+	private int mStartX;
+	private int mFinalX;
+	private int mCurrX;
+	private long mStartNanos;
+	private long mDurationNanos;
+	/** Initial velocity of fling in pixels per second, 0 for programmatic scroll */
+	private int mVelocity;
+
+	/**
+	 * @param deceleration friction multiplied by physical coefficient, in pixels per second squared, see {@link #computeDeceleration(float)}
+	 */
+	public ScrollAnimator(float deceleration){
+		if(deceleration <= 0) throw new IllegalArgumentException("Deceleration must be positive");
+		mDeceleration = deceleration;
+	}
+
+	/**
+	 * @return fling deceleration matching default friction of platform Scroller on screen with given density
+	 */
+	public static float computeDeceleration(float density){
+		return GRAVITY_EARTH * INCHES_PER_METER * density * 160f * PHYSICAL_COEFF_TUNING * DEFAULT_FRICTION;
+	}
+
+	/**
+	 * Start scrolling by dx pixels
+	 * @param startNanos frame time animation starts at
+	 */
+	public void startScroll(int startX, int dx, int durationMillis, long startNanos){
+		mVelocity = 0;
+		start(startX, startX + dx, durationMillis * NANOS_PER_MILLI, startNanos);
+	}
+
+	/**
+	 * Start fling along deceleration spline of platform Scroller, distance and duration are those of Scroller
+	 * @param velocity initial velocity in pixels per second
+	 * @param startNanos frame time animation starts at
+	 */
+	public void fling(int startX, int velocity, long startNanos){
+		mVelocity = velocity;
+		if(velocity == 0){
+			start(startX, startX, 0, startNanos);
+			return;
+		}
+		final double l = Math.log(INFLEXION * Math.abs(velocity) / mDeceleration);
+		final double decelMinusOne = DECELERATION_RATE - 1.0;
+		final long durationMillis = (long) (1000.0 * Math.exp(l / decelMinusOne));
+		final double distance = mDeceleration * Math.exp(DECELERATION_RATE / decelMinusOne * l);
+		start(startX, startX + (int) Math.round(Math.signum(velocity) * distance), durationMillis * NANOS_PER_MILLI, startNanos);
+	}
+
+	/**
+	 * Retarget fling which was just started, so it stops exactly at finalX. Like Scroller.setFinalX, duration is kept
+	 * and spline is stretched over new distance
+	 */
+	public void setFinalX(int finalX){
+		start(mStartX, finalX, mDurationNanos, mStartNanos);
+	}
+
+	private void start(int startX, int finalX, long durationNanos, long startNanos){
+		mStartX = startX;
+		mCurrX = startX;
+		mFinalX = finalX;
+		mStartNanos = startNanos;
+		mDurationNanos = durationNanos;
+		mFinished = startX == finalX || durationNanos <= 0;
+		if(mFinished) mCurrX = finalX;
+	}
+
+	/**
+	 * Compute position for frame time
+	 * @return true if animation was running, position reached in last frame is reported as running too
+	 */
+	public boolean computeScrollOffset(long frameTimeNanos){
+		if(mFinished) return false;
+
+		final long elapsed = frameTimeNanos - mStartNanos;
+		if(elapsed >= mDurationNanos){
+			mCurrX = mFinalX;
+			mFinished = true;
+		}
+		else if(elapsed > 0){
+			final float t = (float) elapsed / mDurationNanos;
+			final float fraction = mVelocity != 0 ? splinePosition(t) : viscousFluid(t, VISCOUS_FLUID_NORMALIZE, VISCOUS_FLUID_OFFSET);
+			mCurrX = mStartX + Math.round((mFinalX - mStartX) * fraction);
+		}
+		return true;
+	}
+
+	/**
+	 * @return fraction of fling distance at fraction of its duration
+	 */
+	private static float splinePosition(float t){
+		final int index = (int) (NB_SAMPLES * t);
+		if(index >= NB_SAMPLES) return 1.0f;
+		final float tInf = (float) index / NB_SAMPLES;
+		final float tSup = (float) (index + 1) / NB_SAMPLES;
+		final float dInf = SPLINE_POSITION[index];
+		final float dSup = SPLINE_POSITION[index + 1];
+		return dInf + (t - tInf) * (dSup - dInf) / (tSup - tInf);
+	}
+
+	/**
+	 * Interpolation of programmatic scroll of platform Scroller
+	 */
+	private static float viscousFluid(float x, float normalize, float offset){
+		x *= VISCOUS_FLUID_SCALE;
+		if(x < 1.0f){
+			x -= (1.0f - (float) Math.exp(-x));
+		}
+		else{
+			final float start = 0.36787944117f; // 1/e == exp(-1)
+			x = 1.0f - (float) Math.exp(1.0f - x);
+			x = start + x * (1.0f - start);
+		}
+		final float interpolated = x * normalize;
+		return interpolated > 0 ? interpolated + offset : interpolated;
+	}
+
+	/**
+	 * Stops animation at current position
+	 */
+	public void forceFinished(boolean finished){
+		mFinished = finished;
+	}
+
+	/**
+	 * Stops animation and moves to final position
+	 */
+	public void abortAnimation(){
+		mCurrX = mFinalX;
+		mFinished = true;
+	}
+
+	public boolean isFinished(){
+		return mFinished;
+	}
+
+	public int getCurrX(){
+		return mCurrX;
+	}
+
+	public int getStartX(){
+		return mStartX;
+	}
+
+	public int getFinalX(){
+		return mFinalX;
+	}
+
+	/**
+	 * @return initial velocity of fling in pixels per second, 0 for programmatic scroll
+	 */
+	public int getVelocity(){
+		return mVelocity;
+	}
+
+	public long getDurationNanos(){
+		return mDurationNanos;
+	}
+}
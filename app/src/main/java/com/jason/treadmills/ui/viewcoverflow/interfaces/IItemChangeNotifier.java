@@ -0,0 +1,11 @@
+package com.jason.treadmills.ui.viewcoverflow.interfaces;
+
+/**
+ * Adapter which can describe its data changes item by item. Containers register on adapters implementing it
+ * and update only affected items. Every item notification must be followed by notifyDataSetChanged
+ */
+public interface IItemChangeNotifier {
+	void registerItemChangeObserver(IItemChangeObserver observer);
+
+	void unregisterItemChangeObserver(IItemChangeObserver observer);
+}
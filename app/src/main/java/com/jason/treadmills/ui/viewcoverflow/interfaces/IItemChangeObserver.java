@@ -0,0 +1,14 @@
+package com.jason.treadmills.ui.viewcoverflow.interfaces;
+
+/**
+ * Receives item level changes of adapter. Positions are relative to state of adapter after previous notification
+ */
+public interface IItemChangeObserver {
+	void onItemRangeChanged(int positionStart, int itemCount);
+
+	void onItemRangeInserted(int positionStart, int itemCount);
+
+	void onItemRangeRemoved(int positionStart, int itemCount);
+
+	void onItemMoved(int fromPosition, int toPosition);
+}
@@ -0,0 +1,264 @@
+package com.jason.treadmills.utils;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of mutable bitmaps which can be reused instead of allocating new ones.
+ * Bitmaps are bucketed by width, height and config, pool is bounded by total bytes
+ * and least recently returned bitmaps are evicted (recycled) first.
+ */
+public class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+
+    private static BitmapPool sDefault;
+
+    /** Bitmaps available for reuse, grouped by dimensions and config */
+    private final HashMap<Key, ArrayDeque<Bitmap>> mBuckets = new HashMap<>();
+
+    /** Every pooled bitmap in order in which it was returned to pool, oldest first */
+    private final LinkedHashMap<Bitmap, Key> mLru = new LinkedHashMap<>();
+
+    /** Lookup key, reused for queries to avoid allocation on every get */
+    private final Key mQueryKey = new Key();
+
+    private long mMaxBytes;
+    private long mBytes;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * @param maxBytes Maximal number of bytes which can be held by bitmaps waiting in pool
+     */
+    public BitmapPool(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must not be negative");
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Pool shared by all widgets in application. Its budget is eighth of the heap available to the VM
+     */
+    public static synchronized BitmapPool getDefault() {
+        if (sDefault == null) {
+            sDefault = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return sDefault;
+    }
+
+    /**
+     * Get mutable bitmap of given size and config. Reused bitmap is erased to transparent color,
+     * when there is no pooled bitmap matching the request, new one is allocated.
+     * Return bitmap by {@link #put(Bitmap)} when you don't need it anymore.
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        if (config == null) config = Bitmap.Config.ARGB_8888;
+
+        final Bitmap b = poll(width, height, config);
+        if (b != null) {
+            b.eraseColor(Color.TRANSPARENT);
+            return b;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Same as {@link #get(int, int, Bitmap.Config)}, but content of reused bitmap is not erased.
+     * Use it only when caller overwrites every pixel.
+     */
+    public Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        if (config == null) config = Bitmap.Config.ARGB_8888;
+
+        final Bitmap b = poll(width, height, config);
+        if (b != null) return b;
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    private synchronized Bitmap poll(int width, int height, Bitmap.Config config) {
+        mQueryKey.set(width, height, config);
+        final ArrayDeque<Bitmap> bucket = mBuckets.get(mQueryKey);
+        if (bucket == null || bucket.isEmpty()) {
+            mMissCount++;
+            return null;
+        }
+
+        final Bitmap b = bucket.pollLast();
+        mLru.remove(b);
+        mBytes -= getBitmapBytes(b);
+        mHitCount++;
+        return b;
+    }
+
+    /**
+     * Return bitmap to pool. Bitmaps which can't be reused (immutable, recycled) or do not fit into pool are recycled.
+     * Caller must not touch bitmap after this call.
+     * @param bitmap bitmap to return, null is ignored
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+
+        if (!bitmap.isMutable() || bitmap.getConfig() == null || getBitmapBytes(bitmap) > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            if (mLru.containsKey(bitmap)) {
+                Logger.showErrorLog(TAG, "Bitmap returned to pool twice");
+                return;
+            }
+
+            final Key key = new Key();
+            key.set(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            ArrayDeque<Bitmap> bucket = mBuckets.get(key);
+            if (bucket == null) {
+                bucket = new ArrayDeque<>();
+                mBuckets.put(key, bucket);
+            }
+            bucket.addLast(bitmap);
+            mLru.put(bitmap, key);
+            mBytes += getBitmapBytes(bitmap);
+            mPutCount++;
+
+            trimToSize(mMaxBytes);
+        }
+    }
+
+    /**
+     * Recycle least recently returned bitmaps until pool holds at most maxBytes
+     */
+    public synchronized void trimToSize(long maxBytes) {
+        final Iterator<Map.Entry<Bitmap, Key>> it = mLru.entrySet().iterator();
+        while (mBytes > maxBytes && it.hasNext()) {
+            final Map.Entry<Bitmap, Key> e = it.next();
+            final Bitmap b = e.getKey();
+            it.remove();
+
+            final ArrayDeque<Bitmap> bucket = mBuckets.get(e.getValue());
+            bucket.remove(b);
+            if (bucket.isEmpty()) mBuckets.remove(e.getValue());
+
+            mBytes -= getBitmapBytes(b);
+            mEvictionCount++;
+            b.recycle();
+        }
+    }
+
+    /**
+     * Recycle all pooled bitmaps
+     */
+    public void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * Shrink pool according to memory pressure, half of budget is kept while app is running moderately low on memory,
+     * nothing from running low on memory up.
+     * @param level one of ComponentCallbacks2.TRIM_MEMORY_ levels
+     * @return number of bytes released
+     */
+    public synchronized long trimMemory(int level) {
+        final long before = mBytes;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            evictAll();
+        }
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(mMaxBytes / 2);
+        }
+        return before - mBytes;
+    }
+
+    /**
+     * Change budget of pool, bitmaps over new budget are recycled immediately
+     */
+    public synchronized void setMaxSize(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must not be negative");
+        mMaxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long maxSize() {
+        return mMaxBytes;
+    }
+
+    /**
+     * @return bytes held by bitmaps waiting in pool
+     */
+    public synchronized long size() {
+        return mBytes;
+    }
+
+    /**
+     * @return number of get requests served by pooled bitmap
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return number of get requests which had to allocate new bitmap
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    public synchronized int putCount() {
+        return mPutCount;
+    }
+
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final int accesses = mHitCount + mMissCount;
+        final int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format("BitmapPool[size=%d,maxSize=%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+                mBytes, mMaxBytes, mHitCount, mMissCount, mEvictionCount, hitPercent);
+    }
+
+    /**
+     * getByteCount() is not available on API < 12
+     */
+    public static int getBitmapBytes(Bitmap b) {
+        return b.getRowBytes() * b.getHeight();
+    }
+
+    private static final class Key {
+        int width;
+        int height;
+        Bitmap.Config config;
+
+        void set(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            final Key k = (Key) o;
+            return width == k.width && height == k.height && config == k.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (config != null ? config.hashCode() : 0);
+            return result;
+        }
+    }
+}
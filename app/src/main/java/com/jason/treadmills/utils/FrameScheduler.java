@@ -0,0 +1,214 @@
+package com.jason.treadmills.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Runs animation callbacks once per display frame with timestamp of frame, so all widgets advance their animations
+ * from same clock at start of frame instead of in the middle of drawing.
+ * Frames come from {@link Clock}, which is Choreographer on API 16+, tests can supply fake clock and call
+ * {@link #doFrame(long)} themselves. Not thread safe, use it from one thread only.
+ */
+public class FrameScheduler {
+
+    /**
+     * Callback of one animation
+     */
+    public interface FrameCallback {
+        /**
+         * Advance animation to state at frame time
+         * @param frameTimeNanos time of frame in {@link System#nanoTime()} time base
+         * @return true to be called again in next frame
+         */
+        boolean doFrame(long frameTimeNanos);
+    }
+
+    /**
+     * Source of frames and of current time
+     */
+    public interface Clock {
+        /**
+         * @return current time in same time base as frame times
+         */
+        long nanoTime();
+
+        /**
+         * Call {@link FrameScheduler#doFrame(long)} of scheduler once at next frame
+         */
+        void requestFrame(FrameScheduler scheduler);
+    }
+
+    private static FrameScheduler sDefault;
+
+    private final Clock mClock;
+
+    /** Callbacks which run in next frame, each one at most once */
+    private final ArrayList<FrameCallback> mCallbacks = new ArrayList<>();
+
+    /** Callbacks running in current frame, removed callbacks are nulled so they don't run */
+    private FrameCallback[] mRunning = new FrameCallback[4];
+    private int mRunningCount;
+
+    private boolean mFrameRequested;
+    private long mLastFrameNanos = -1;
+    private int mFrameCount;
+
+    public FrameScheduler(Clock clock) {
+        if (clock == null) throw new NullPointerException("clock == null");
+        mClock = clock;
+    }
+
+    /**
+     * @return scheduler driven by display frames of main thread, use it from main thread only
+     */
+    public static FrameScheduler getDefault() {
+        if (sDefault == null) {
+            sDefault = new FrameScheduler(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                    ? new ChoreographerClock() : new HandlerClock());
+        }
+        return sDefault;
+    }
+
+    /**
+     * Run callback in next frame. Callback which is already scheduled is not added again
+     */
+    public void postFrameCallback(FrameCallback callback) {
+        if (callback == null) throw new NullPointerException("callback == null");
+        if (!mCallbacks.contains(callback)) mCallbacks.add(callback);
+        requestFrame();
+    }
+
+    /**
+     * Callback won't run in next frame, nor in current frame if it did not run yet
+     */
+    public void removeFrameCallback(FrameCallback callback) {
+        mCallbacks.remove(callback);
+        for (int i = 0; i < mRunningCount; i++) {
+            if (mRunning[i] == callback) mRunning[i] = null;
+        }
+    }
+
+    public boolean isScheduled(FrameCallback callback) {
+        return mCallbacks.contains(callback);
+    }
+
+    /**
+     * Runs callbacks scheduled before this frame, each exactly once. Callbacks posted while frame runs wait for next frame
+     * @param frameTimeNanos time of frame, frames with time not after last frame are dropped
+     */
+    public void doFrame(long frameTimeNanos) {
+        mFrameRequested = false;
+        if (frameTimeNanos <= mLastFrameNanos) {
+            if (!mCallbacks.isEmpty()) requestFrame();
+            return;
+        }
+        mLastFrameNanos = frameTimeNanos;
+        mFrameCount++;
+
+        final int count = mCallbacks.size();
+        if (mRunning.length < count) mRunning = new FrameCallback[count * 2];
+        for (int i = 0; i < count; i++) {
+            mRunning[i] = mCallbacks.get(i);
+        }
+        mCallbacks.clear();
+        mRunningCount = count;
+
+        for (int i = 0; i < count; i++) {
+            final FrameCallback callback = mRunning[i];
+            if (callback == null) continue;
+            mRunning[i] = null;
+            if (callback.doFrame(frameTimeNanos) && !mCallbacks.contains(callback)) {
+                mCallbacks.add(callback);
+            }
+        }
+        mRunningCount = 0;
+
+        if (!mCallbacks.isEmpty()) requestFrame();
+    }
+
+    private void requestFrame() {
+        if (mFrameRequested) return;
+        mFrameRequested = true;
+        mClock.requestFrame(this);
+    }
+
+    /**
+     * @return current time of clock, animations started outside of frame callback should start at this time
+     */
+    public long now() {
+        return mClock.nanoTime();
+    }
+
+    /**
+     * @return time of last frame or -1 if there was no frame yet
+     */
+    public long getLastFrameNanos() {
+        return mLastFrameNanos;
+    }
+
+    /**
+     * @return number of frames which ran callbacks
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Frames of display, available on API 16+
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerClock implements Clock, Choreographer.FrameCallback {
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+        private FrameScheduler mScheduler;
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void requestFrame(FrameScheduler scheduler) {
+            mScheduler = scheduler;
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mScheduler.doFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Frames emulated by messages of main thread spaced by typical frame duration, for devices without Choreographer
+     */
+    private static class HandlerClock implements Clock, Runnable {
+        private static final long FRAME_NANOS = 16666667L;
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private FrameScheduler mScheduler;
+        private long mLastFrameNanos;
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void requestFrame(FrameScheduler scheduler) {
+            mScheduler = scheduler;
+            final long delayNanos = mLastFrameNanos + FRAME_NANOS - System.nanoTime();
+            mHandler.postDelayed(this, Math.max(0, delayNanos / 1000000L));
+        }
+
+        @Override
+        public void run() {
+            mLastFrameNanos = System.nanoTime();
+            mScheduler.doFrame(mLastFrameNanos);
+        }
+    }
+}
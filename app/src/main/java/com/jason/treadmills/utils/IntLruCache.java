@@ -0,0 +1,352 @@
+package com.jason.treadmills.utils;
+
+import java.util.Arrays;
+
+/**
+ * LRU cache with primitive int keys, so lookups don't box keys. Keys are kept in open addressing hash table
+ * with linear probing, entries are linked in access order, least recently used first.
+ * Cache is bounded by sum of entry sizes returned by {@link #sizeOf(int, Object)}, which are bytes for caches of bitmaps.
+ * Not thread safe, use it from one thread only.
+ */
+public class IntLruCache<V> {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Hash table of entry indices, EMPTY for free slot. Length is power of two */
+    private int[] mTable;
+
+    /** Entries, addressed by index stored in mTable */
+    private int[] mKeys;
+    private Object[] mValues;
+    private int[] mSizes;
+    private int[] mPrev;
+    private int[] mNext;
+
+    /** Least and most recently used entry */
+    private int mHead = EMPTY;
+    private int mTail = EMPTY;
+
+    /** Chain of unused entries linked by mNext */
+    private int mFree = EMPTY;
+    private int mUsedEntries;
+
+    private int mCount;
+    private long mSize;
+    private long mMaxSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * @param maxSize maximal sum of sizes of entries
+     */
+    public IntLruCache(long maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize <= 0");
+        mMaxSize = maxSize;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int entries) {
+        mTable = new int[entries * 2];
+        Arrays.fill(mTable, EMPTY);
+        mKeys = new int[entries];
+        mValues = new Object[entries];
+        mSizes = new int[entries];
+        mPrev = new int[entries];
+        mNext = new int[entries];
+    }
+
+    /**
+     * Size of entry in units of max size, 1 by default. Size of entry must not change while it is in cache
+     */
+    protected int sizeOf(int key, V value) {
+        return 1;
+    }
+
+    /**
+     * Called for entries which were evicted, removed or replaced
+     * @param evicted true if entry was removed to make space, false if it was removed by {@link #remove(int)} or replaced by {@link #put(int, Object)}
+     * @param newValue new value for key when entry was replaced, null otherwise
+     */
+    protected void entryRemoved(boolean evicted, int key, V oldValue, V newValue) {
+    }
+
+    private static int hash(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return table slot holding entry with key or EMPTY
+     */
+    private int findSlot(int key) {
+        final int mask = mTable.length - 1;
+        int slot = hash(key) & mask;
+        int e;
+        while ((e = mTable[slot]) != EMPTY) {
+            if (mKeys[e] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return value for key, which becomes most recently used, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        final int slot = findSlot(key);
+        if (slot == EMPTY) {
+            mMissCount++;
+            return null;
+        }
+        final int e = mTable[slot];
+        moveToTail(e);
+        mHitCount++;
+        return (V) mValues[e];
+    }
+
+    /**
+     * @return true if key is in cache, does not change order of entries
+     */
+    public boolean containsKey(int key) {
+        return findSlot(key) != EMPTY;
+    }
+
+    /**
+     * Puts value as most recently used and evicts least recently used entries if cache is over max size
+     * @return previous value for key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new NullPointerException("value == null");
+        mPutCount++;
+
+        V previous = null;
+        final int slot = findSlot(key);
+        if (slot != EMPTY) {
+            final int e = mTable[slot];
+            previous = (V) mValues[e];
+            mSize -= mSizes[e];
+            mValues[e] = value;
+            mSizes[e] = safeSizeOf(key, value);
+            mSize += mSizes[e];
+            moveToTail(e);
+        }
+        else {
+            if (mCount == mKeys.length) grow();
+
+            final int e = obtainEntry();
+            mKeys[e] = key;
+            mValues[e] = value;
+            mSizes[e] = safeSizeOf(key, value);
+            mSize += mSizes[e];
+            linkTail(e);
+            insertSlot(e);
+            mCount++;
+        }
+
+        if (previous != null) entryRemoved(false, key, previous, value);
+        trimToSize(mMaxSize);
+        return previous;
+    }
+
+    /**
+     * @return removed value or null if there was no entry for key
+     */
+    public V remove(int key) {
+        final int slot = findSlot(key);
+        if (slot == EMPTY) return null;
+
+        final V value = removeSlot(slot);
+        entryRemoved(false, key, value, null);
+        return value;
+    }
+
+    /**
+     * Evicts least recently used entries until sum of sizes is at most maxSize
+     */
+    public void trimToSize(long maxSize) {
+        while (mSize > maxSize && mHead != EMPTY) {
+            evictHead();
+        }
+    }
+
+    /**
+     * Evicts least recently used entries until at most count entries remain
+     */
+    public void trimToCount(int count) {
+        while (mCount > count && mHead != EMPTY) {
+            evictHead();
+        }
+    }
+
+    private void evictHead() {
+        final int key = mKeys[mHead];
+        final V value = removeSlot(findSlot(key));
+        mEvictionCount++;
+        entryRemoved(true, key, value, null);
+    }
+
+    /**
+     * Evict all entries
+     */
+    public void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * Change max size, entries over new size are evicted immediately
+     */
+    public void resize(long maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize <= 0");
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public long size() {
+        return mSize;
+    }
+
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return number of entries in cache
+     */
+    public int count() {
+        return mCount;
+    }
+
+    public int hitCount() {
+        return mHitCount;
+    }
+
+    public int missCount() {
+        return mMissCount;
+    }
+
+    public int putCount() {
+        return mPutCount;
+    }
+
+    public int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public String toString() {
+        final int accesses = mHitCount + mMissCount;
+        final int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format("IntLruCache[size=%d,maxSize=%d,count=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                mSize, mMaxSize, mCount, mHitCount, mMissCount, hitPercent);
+    }
+
+    private int safeSizeOf(int key, V value) {
+        final int size = sizeOf(key, value);
+        if (size < 0) throw new IllegalStateException("Negative size: " + key + "=" + value);
+        return size;
+    }
+
+    private int obtainEntry() {
+        if (mFree != EMPTY) {
+            final int e = mFree;
+            mFree = mNext[e];
+            return e;
+        }
+        return mUsedEntries++;
+    }
+
+    private void insertSlot(int e) {
+        final int mask = mTable.length - 1;
+        int slot = hash(mKeys[e]) & mask;
+        while (mTable[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        mTable[slot] = e;
+    }
+
+    /**
+     * Removes entry in slot from table and from access order, entry is returned to free chain
+     */
+    @SuppressWarnings("unchecked")
+    private V removeSlot(int slot) {
+        final int e = mTable[slot];
+        final V value = (V) mValues[e];
+
+        unlink(e);
+        mSize -= mSizes[e];
+        mValues[e] = null;
+        mNext[e] = mFree;
+        mFree = e;
+        mCount--;
+
+        //backward shift deletion keeps probe sequences unbroken without tombstones
+        final int mask = mTable.length - 1;
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (mTable[next] != EMPTY) {
+            final int home = hash(mKeys[mTable[next]]) & mask;
+            //entry can move to hole if hole lies cyclically between its home slot and its current slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mTable[hole] = mTable[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mTable[hole] = EMPTY;
+
+        return value;
+    }
+
+    private void grow() {
+        final int[] keys = mKeys;
+        final Object[] values = mValues;
+        final int[] sizes = mSizes;
+        final int[] next = mNext;
+        final int head = mHead;
+
+        allocate(keys.length * 2);
+        mHead = EMPTY;
+        mTail = EMPTY;
+        mFree = EMPTY;
+        mUsedEntries = 0;
+
+        //copy entries in access order, so they are compacted and order is kept
+        for (int e = head; e != EMPTY; e = next[e]) {
+            final int n = mUsedEntries++;
+            mKeys[n] = keys[e];
+            mValues[n] = values[e];
+            mSizes[n] = sizes[e];
+            linkTail(n);
+            insertSlot(n);
+        }
+    }
+
+    private void linkTail(int e) {
+        mPrev[e] = mTail;
+        mNext[e] = EMPTY;
+        if (mTail != EMPTY) mNext[mTail] = e;
+        else mHead = e;
+        mTail = e;
+    }
+
+    private void unlink(int e) {
+        final int p = mPrev[e];
+        final int n = mNext[e];
+        if (p != EMPTY) mNext[p] = n;
+        else mHead = n;
+        if (n != EMPTY) mPrev[n] = p;
+        else mTail = p;
+    }
+
+    private void moveToTail(int e) {
+        if (mTail == e) return;
+        unlink(e);
+        linkTail(e);
+    }
+}
@@ -0,0 +1,65 @@
+package com.jason.treadmills.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+
+/**
+ * Delivers onTrimMemory and onLowMemory of application to widgets.
+ * ComponentCallbacks2 exists since API 14, on older versions registration does nothing.
+ */
+public class TrimMemoryHelper {
+
+    public interface OnTrimMemoryListener {
+        /**
+         * @param level one of ComponentCallbacks2.TRIM_MEMORY_ levels, onLowMemory is delivered as TRIM_MEMORY_COMPLETE
+         */
+        void onTrimMemory(int level);
+    }
+
+    /**
+     * Register listener on application context
+     * @return registration which has to be passed to {@link #unregister(Context, Object)}, null if API doesn't support it
+     */
+    public static Object register(Context context, OnTrimMemoryListener listener) {
+        if (Build.VERSION.SDK_INT < 14) return null;
+
+        final Callbacks callbacks = new Callbacks(listener);
+        context.getApplicationContext().registerComponentCallbacks(callbacks);
+        return callbacks;
+    }
+
+    /**
+     * @param registration value returned by {@link #register(Context, OnTrimMemoryListener)}, null is ignored
+     */
+    public static void unregister(Context context, Object registration) {
+        if (registration == null) return;
+        context.getApplicationContext().unregisterComponentCallbacks((ComponentCallbacks2) registration);
+    }
+
+    /**
+     * Loaded only on API 14 and newer
+     */
+    private static class Callbacks implements ComponentCallbacks2 {
+        private final OnTrimMemoryListener mListener;
+
+        Callbacks(OnTrimMemoryListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            mListener.onTrimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            mListener.onTrimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.jason.treadmills.benchmark;
+
+import com.jason.treadmills.ui.viewcarousel.CarouselRing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one rotation step of the whole carousel ring, for ring sizes up to far beyond 15 items carousel accepts.
+ * Only array model of {@link CarouselRing} is measured, previous layout path went through adapter views and
+ * FloatMath on Android, which can't be reproduced on JVM, so it has to be compared on device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CarouselRingBenchmark {
+	private static final int WIDTH = 1080;
+	private static final int HEIGHT = 800;
+	private static final int ITEM_WIDTH = 200;
+	private static final float THETA = (float) (45 * Math.PI / 180);
+	private static final float DELTA = 2.5f;
+
+	@Param({"15", "100", "1000", "10000"})
+	public int items;
+
+	private final CarouselRing mRing = new CarouselRing();
+
+	@Setup
+	public void setUp() {
+		mRing.setCount(items);
+		mRing.setGeometry(WIDTH, HEIGHT, THETA);
+		for (int i = 0; i < items; i++) {
+			mRing.setItemWidth(i, ITEM_WIDTH);
+		}
+		mRing.setRotation(0);
+	}
+
+	@Benchmark
+	public float ringArrays() {
+		mRing.rotate(DELTA);
+		return mRing.getZ(0) + mRing.getAlpha(items - 1);
+	}
+}
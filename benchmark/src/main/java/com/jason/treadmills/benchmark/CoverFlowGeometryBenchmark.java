@@ -0,0 +1,57 @@
+package com.jason.treadmills.benchmark;
+
+import com.jason.treadmills.ui.viewcoverflow.CoverFlowGeometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing transformation of all covers visible in one frame by closed form of {@link CoverFlowGeometry}.
+ * Only closed form is measured, previous computation went through native android.graphics.Camera,
+ * which can't be reproduced on JVM, so it has to be compared on device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoverFlowGeometryBenchmark {
+	private static final int WIDTH = 1080;
+	private static final int COVER_WIDTH = 160;
+	private static final int COVER_HEIGHT = 200;
+
+	@Param({"9", "15"})
+	public int covers;
+
+	private final CoverFlowGeometry mGeometry = new CoverFlowGeometry();
+	private final float[] mValues = new float[9];
+	private int mScrollX;
+
+	@Setup
+	public void setUp() {
+		mGeometry.setParams(0.3f, 0.3f, 0.1f, 1.0f, 1.3f, 1.5f, 1000f, 1280, COVER_WIDTH);
+	}
+
+	@Benchmark
+	public float closedForm() {
+		mScrollX = (mScrollX + 7) % WIDTH;
+		mGeometry.setViewport(WIDTH, mScrollX);
+
+		float sum = 0;
+		for (int i = 0; i < covers; i++) {
+			mGeometry.computeCoverMatrix(centerOf(i), COVER_WIDTH, COVER_HEIGHT, mValues);
+			sum += mValues[0] + mValues[2];
+		}
+		return sum;
+	}
+
+	private int centerOf(int i) {
+		return mScrollX + (i - covers / 2) * COVER_WIDTH + WIDTH / 2;
+	}
+}